@@ -0,0 +1,309 @@
+package oop.ex4.benchmarks;
+
+import oop.ex4.data_structures.AvlTree;
+import oop.ex4.data_structures.FrozenAvlTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations only AvlTree has: lookups through a cursor and in a frozen snapshot, emptying with
+ * pollFirst, and the relaxed balance rule and node pool with their effect on writes, lookups and
+ * rebalance(). The single shot benchmarks handle all size keys per invocation, so their time and
+ * allocation are per tree. Their allocation also counts the tree the iteration starts from, built like the
+ * one of add for rebalance and from the keys for pollFirst.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class AvlTreeBenchmark {
+
+    @Param({"RANDOM", "SEQUENTIAL", "NEARLY_SORTED", "ZIPF"})
+    public Distribution distribution;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /*The balance rule of the trees (setAllowedBalanceDifference), 2 is strict*/
+    @Param({"2"})
+    public int balanceDifference;
+
+    /*The number of removed nodes the trees keep for reuse (setNodePoolCapacity)*/
+    @Param({"0"})
+    public int nodePoolCapacity;
+
+    /*The keys of the trees, in insertion order*/
+    int[] keys;
+
+    /*The keys of the lookups and of churn*/
+    int[] operationKeys;
+
+    /**
+     * Prepares the keys.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = distribution.keys(size);
+        operationKeys = distribution.operationKeys(keys);
+    }
+
+    /**
+     * Reports the metrics of the trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Backend.printMetrics();
+    }
+
+    /**
+     * @param bulkBuilt whether to build the tree from the keys with the bulk constructor, rather than adding
+     * them one by one so the shape follows the balance rule.
+     * @return an empty or full tree with the balance rule and node pool of the benchmark.
+     */
+    AvlTree newTree(boolean bulkBuilt) {
+        AvlTree avlTree = bulkBuilt ? new AvlTree(keys) : new AvlTree();
+        avlTree.setAllowedBalanceDifference(balanceDifference);
+        avlTree.setNodePoolCapacity(nodePoolCapacity);
+        if (!bulkBuilt) {
+            for (int key : keys) {
+                avlTree.add(key);
+            }
+        }
+        return avlTree;
+    }
+
+    /**
+     * A tree built from the keys, with a frozen snapshot and a cursor, kept for the whole trial.
+     */
+    @State(Scope.Benchmark)
+    public static class BuiltTree {
+        /*The tree*/
+        AvlTree avlTree;
+
+        /*A frozen snapshot of the tree*/
+        FrozenAvlTree frozenTree;
+
+        /*A cursor of the tree*/
+        AvlTree.Cursor cursor;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Trial)
+        public void setUp(AvlTreeBenchmark benchmark) {
+            avlTree = benchmark.newTree(true);
+            frozenTree = avlTree.freeze();
+            cursor = avlTree.cursor();
+        }
+    }
+
+    /**
+     * A tree filled by adds, whose shape follows the balance rule, kept for the whole trial.
+     */
+    @State(Scope.Benchmark)
+    public static class InsertedTree {
+        /*The tree*/
+        AvlTree avlTree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Trial)
+        public void setUp(AvlTreeBenchmark benchmark) {
+            avlTree = benchmark.newTree(false);
+        }
+    }
+
+    /**
+     * A new empty tree for every single shot invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyTree {
+        /*The tree*/
+        AvlTree avlTree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(AvlTreeBenchmark benchmark) {
+            avlTree = new AvlTree();
+            avlTree.setAllowedBalanceDifference(benchmark.balanceDifference);
+            avlTree.setNodePoolCapacity(benchmark.nodePoolCapacity);
+        }
+    }
+
+    /**
+     * A new tree built from the keys for every single shot invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class FreshBuiltTree {
+        /*The tree*/
+        AvlTree avlTree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(AvlTreeBenchmark benchmark) {
+            avlTree = benchmark.newTree(true);
+        }
+    }
+
+    /**
+     * A new tree filled by adds for every single shot invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class FreshInsertedTree {
+        /*The tree*/
+        AvlTree avlTree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(AvlTreeBenchmark benchmark) {
+            avlTree = benchmark.newTree(false);
+        }
+    }
+
+    /**
+     * @param position the position in the lookup keys.
+     * @param insertedTree a tree filled by adds.
+     * @return the depth of the key.
+     */
+    @Benchmark
+    public int insertedContains(Position position, InsertedTree insertedTree) {
+        return insertedTree.avlTree.contains(operationKeys[position.next()]);
+    }
+
+    /**
+     * @param position the position in the lookup keys.
+     * @param builtTree a tree built from the keys.
+     * @return whether the key was found.
+     */
+    @Benchmark
+    public boolean cursorContains(Position position, BuiltTree builtTree) {
+        return builtTree.cursor.containsKey(operationKeys[position.next()]);
+    }
+
+    /**
+     * @param position the position in the lookup keys.
+     * @param builtTree a tree built from the keys.
+     * @return the depth of the key in the snapshot.
+     */
+    @Benchmark
+    public int frozenContains(Position position, BuiltTree builtTree) {
+        return builtTree.frozenTree.contains(operationKeys[position.next()]);
+    }
+
+    /**
+     * @param builtTree a tree built from the keys.
+     * @return the sum of a full in-order scan of the snapshot, the time is per scan of size keys.
+     */
+    @Benchmark
+    public long frozenIterate(BuiltTree builtTree) {
+        return Backend.sum(builtTree.frozenTree.intIterator());
+    }
+
+    /**
+     * Delete-heavy steady state: deletes a key and adds it back, the time is per delete or add. With a node
+     * pool the allocation per operation drops to zero.
+     * @param position the position in the operation keys.
+     * @param builtTree a tree built from the keys.
+     * @return whether both changes were made.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean churn(Position position, BuiltTree builtTree) {
+        int key = operationKeys[position.next()];
+        return builtTree.avlTree.delete(key) & builtTree.avlTree.add(key);
+    }
+
+    /**
+     * @param emptyTree an empty tree.
+     * @return the number of keys added.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int add(EmptyTree emptyTree) {
+        int added = 0;
+        for (int key : keys) {
+            added += emptyTree.avlTree.add(key) ? 1 : 0;
+        }
+        return added;
+    }
+
+    /**
+     * @param emptyTree an empty tree.
+     * @return the number of keys added through a cursor.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int cursorAdd(EmptyTree emptyTree) {
+        AvlTree.Cursor cursor = emptyTree.avlTree.cursor();
+        int added = 0;
+        for (int key : keys) {
+            added += cursor.add(key) ? 1 : 0;
+        }
+        return added;
+    }
+
+    /**
+     * @param builtTree a tree built from the keys.
+     * @return the number of keys polled until the tree was empty.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int pollFirst(FreshBuiltTree builtTree) {
+        int polled = 0;
+        while (builtTree.avlTree.pollFirst() != null) {
+            polled++;
+        }
+        return polled;
+    }
+
+    /**
+     * Reshapes a tree filled by adds to the strict AVL shape.
+     * @param insertedTree a tree filled by adds.
+     * @return the height after the rebalance.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int rebalance(FreshInsertedTree insertedTree) {
+        insertedTree.avlTree.rebalance();
+        return insertedTree.avlTree.getHeight();
+    }
+}
@@ -0,0 +1,77 @@
+package oop.ex4.benchmarks;
+
+import oop.ex4.data_structures.AvlTreeMetrics;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * A tree under measurement, the operations the benchmarks need behind one interface.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+interface Backend {
+    boolean add(int value);
+
+    boolean delete(int value);
+
+    int contains(int value);
+
+    /**
+     * @return the sum of the values, visited in order.
+     */
+    long scan();
+
+    /**
+     * @return the sum of the values, over a parallel stream where the tree has one.
+     */
+    default long parallelScan() {
+        return scan();
+    }
+
+    /**
+     * Looks up a batch of values.
+     * @param values the values.
+     * @param results receives the result of contains for each value.
+     */
+    default void contains(int[] values, int[] results) {
+        for (int index = 0; index < values.length; index++) {
+            results[index] = contains(values[index]);
+        }
+    }
+
+    /**
+     * Releases what the tree holds besides memory, after the measured time.
+     */
+    default void close() {
+    }
+
+    /**
+     * @param values an iterator.
+     * @return the sum of the values, unboxed if the iterator is primitive.
+     */
+    static long sum(Iterator<Integer> values) {
+        long total = 0;
+        if (values instanceof PrimitiveIterator.OfInt) {
+            PrimitiveIterator.OfInt primitiveValues = (PrimitiveIterator.OfInt) values;
+            while (primitiveValues.hasNext()) {
+                total += primitiveValues.nextInt();
+            }
+        } else {
+            while (values.hasNext()) {
+                total += values.next();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Prints the AvlTreeMetrics counters and latency histograms, if -Doop.ex4.avl.metrics=true turned them
+     * on for the benchmark JVM.
+     */
+    static void printMetrics() {
+        if (AvlTreeMetrics.ENABLED) {
+            System.out.println("AvlTree metrics: " + AvlTreeMetrics.snapshot());
+        }
+    }
+}
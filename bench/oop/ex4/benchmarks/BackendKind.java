@@ -0,0 +1,189 @@
+package oop.ex4.benchmarks;
+
+import oop.ex4.data_structures.ArrayAvlTree;
+import oop.ex4.data_structures.AvlTree;
+import oop.ex4.data_structures.BTree;
+import oop.ex4.data_structures.ConcurrentAvlTree;
+import oop.ex4.data_structures.DurableAvlTree;
+import oop.ex4.data_structures.PersistentAvlTree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * The tree implementations the benchmarks can measure, chosen with -p backend=...
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public enum BackendKind {
+    AVL, ARRAY, BTREE,
+    /*an ArrayAvlTree that keeps its nodes outside of the heap*/
+    ARRAY_OFF_HEAP,
+    /*a PersistentAvlTree, every change makes a new version that replaces the previous one*/
+    PERSISTENT,
+    /*a ConcurrentAvlTree, the only tree the benchmarks may share between threads (-t)*/
+    CONCURRENT,
+    /*a DurableAvlTree in a temporary directory, one kind per sync policy*/
+    DURABLE_SYNC_EACH, DURABLE_GROUP_COMMIT, DURABLE_ASYNC;
+
+    /*The group commit interval of the durable trees, in milliseconds*/
+    private static final long DURABLE_GROUP_COMMIT_MILLIS = 1;
+
+    /*The number of changes between checkpoints of the durable trees*/
+    private static final int DURABLE_CHECKPOINT_INTERVAL = 1 << 20;
+
+    /**
+     * Creates a tree of this kind.
+     * @param keys the keys to build it with, null for an empty tree.
+     * @return the tree.
+     */
+    Backend create(int[] keys) {
+        switch (this) {
+            case DURABLE_SYNC_EACH:
+                return createDurable(DurableAvlTree.SyncPolicy.SYNC_EACH, keys);
+            case DURABLE_GROUP_COMMIT:
+                return createDurable(DurableAvlTree.SyncPolicy.GROUP_COMMIT, keys);
+            case DURABLE_ASYNC:
+                return createDurable(DurableAvlTree.SyncPolicy.ASYNC, keys);
+            case ARRAY:
+            case ARRAY_OFF_HEAP:
+                ArrayAvlTree arrayTree = this == ARRAY ?
+                        (keys == null ? new ArrayAvlTree() : new ArrayAvlTree(keys)) :
+                        (keys == null ? ArrayAvlTree.offHeap(0) : ArrayAvlTree.offHeap(keys));
+                return new Backend() {
+                    public boolean add(int value) { return arrayTree.add(value); }
+                    public boolean delete(int value) { return arrayTree.delete(value); }
+                    public int contains(int value) { return arrayTree.contains(value); }
+                    public long scan() { return Backend.sum(arrayTree.iterator()); }
+                };
+            case PERSISTENT:
+                return new Backend() {
+                    PersistentAvlTree version = keys == null ? PersistentAvlTree.empty() :
+                            PersistentAvlTree.of(keys);
+
+                    public boolean add(int value) {
+                        PersistentAvlTree previous = version;
+                        version = version.add(value);
+                        return version != previous;
+                    }
+
+                    public boolean delete(int value) {
+                        PersistentAvlTree previous = version;
+                        version = version.delete(value);
+                        return version != previous;
+                    }
+
+                    public int contains(int value) { return version.contains(value); }
+                    public long scan() { return Backend.sum(version.intIterator()); }
+                };
+            case CONCURRENT:
+                ConcurrentAvlTree concurrentTree = keys == null ? new ConcurrentAvlTree() :
+                        new ConcurrentAvlTree(keys);
+                return new Backend() {
+                    public boolean add(int value) { return concurrentTree.add(value); }
+                    public boolean delete(int value) { return concurrentTree.delete(value); }
+                    public int contains(int value) { return concurrentTree.contains(value); }
+                    public long scan() { return Backend.sum(concurrentTree.intIterator()); }
+                    public long parallelScan() {
+                        return concurrentTree.intStream().parallel().asLongStream().sum();
+                    }
+                };
+            case BTREE:
+                BTree bTree = keys == null ? new BTree() : new BTree(keys);
+                return new Backend() {
+                    public boolean add(int value) { return bTree.add(value); }
+                    public boolean delete(int value) { return bTree.delete(value); }
+                    public int contains(int value) { return bTree.contains(value); }
+                    public long scan() { return Backend.sum(bTree.intIterator()); }
+                };
+            default:
+                return avl(keys == null ? new AvlTree() : new AvlTree(keys));
+        }
+    }
+
+    /**
+     * @return whether the tree logs its changes to files, such a tree is only filled by adds.
+     */
+    boolean isDurable() {
+        return this == DURABLE_SYNC_EACH || this == DURABLE_GROUP_COMMIT || this == DURABLE_ASYNC;
+    }
+
+    /**
+     * @param avlTree an AVL tree.
+     * @return the tree as a backend.
+     */
+    static Backend avl(AvlTree avlTree) {
+        return new Backend() {
+            public boolean add(int value) { return avlTree.add(value); }
+            public boolean delete(int value) { return avlTree.delete(value); }
+            public int contains(int value) { return avlTree.contains(value); }
+            public void contains(int[] values, int[] results) { avlTree.contains(values, results); }
+            public long scan() { return Backend.sum(avlTree.intIterator()); }
+            public long parallelScan() { return avlTree.intStream().parallel().asLongStream().sum(); }
+        };
+    }
+
+    /**
+     * Creates a durable tree in a new temporary directory. The keys are added and checkpointed with the
+     * ASYNC policy first, so the measured tree starts from a checkpoint whatever its own policy is.
+     * @param syncPolicy the sync policy of the measured tree.
+     * @param keys the keys to fill it with, null for an empty tree.
+     * @return the tree, closing it deletes the directory.
+     */
+    private static Backend createDurable(DurableAvlTree.SyncPolicy syncPolicy, int[] keys) {
+        try {
+            Path directory = Files.createTempDirectory("avl-benchmark-");
+            if (keys != null) {
+                try (DurableAvlTree loader = new DurableAvlTree(directory, DurableAvlTree.SyncPolicy.ASYNC,
+                        DURABLE_GROUP_COMMIT_MILLIS, 0)) {
+                    for (int key : keys) {
+                        loader.add(key);
+                    }
+                    loader.checkpoint().get();
+                }
+            }
+            DurableAvlTree durableTree = new DurableAvlTree(directory, syncPolicy,
+                    DURABLE_GROUP_COMMIT_MILLIS, DURABLE_CHECKPOINT_INTERVAL);
+            return new Backend() {
+                public boolean add(int value) { return durableTree.add(value); }
+                public boolean delete(int value) { return durableTree.delete(value); }
+                public int contains(int value) { return durableTree.contains(value); }
+                public long scan() { return Backend.sum(durableTree.iterator()); }
+                public void close() {
+                    try {
+                        durableTree.close();
+                        deleteDirectory(directory);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Loading the durable tree failed", e);
+        }
+    }
+
+    /**
+     * @param directory a directory to delete with everything in it.
+     * @throws IOException if a file cannot be deleted.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.forEach(paths::add);
+        }
+        paths.sort(Comparator.reverseOrder());
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package oop.ex4.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling and emptying a whole tree: building it from an array, adding every key to an empty tree and
+ * deleting every key from a full tree. Every invocation handles all size keys and is timed on its own, so
+ * the time and the allocation (-prof gc) are per tree, divide them by size for a key. The allocation also
+ * counts the tree the iteration starts from, so that of bulkBuild is to be subtracted from delete.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(1)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"AVL", "ARRAY", "BTREE", "PERSISTENT", "CONCURRENT"})
+    public BackendKind backend;
+
+    @Param({"RANDOM", "SEQUENTIAL", "NEARLY_SORTED", "ZIPF"})
+    public Distribution distribution;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /*The keys of the tree, in insertion order*/
+    int[] keys;
+
+    /**
+     * Prepares the keys.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = distribution.keys(size);
+    }
+
+    /**
+     * An empty tree for an invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyTree {
+        /*The tree*/
+        Backend tree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(BuildBenchmark benchmark) {
+            tree = benchmark.backend.create(null);
+        }
+
+        /**
+         * Releases the tree.
+         */
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            tree.close();
+        }
+    }
+
+    /**
+     * A tree with all the keys for an invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class FullTree {
+        /*The tree*/
+        Backend tree;
+
+        /**
+         * @param benchmark the parameters of the benchmark.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(BuildBenchmark benchmark) {
+            tree = benchmark.backend.create(benchmark.keys);
+        }
+
+        /**
+         * Releases the tree.
+         */
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            tree.close();
+        }
+    }
+
+    /**
+     * Builds a tree from the keys with the bulk constructor. A durable tree has no bulk constructor.
+     * @return the depth of the first key, so the tree is used.
+     */
+    @Benchmark
+    public int bulkBuild() {
+        if (backend.isDurable()) {
+            throw new UnsupportedOperationException("a durable tree is only filled by adds");
+        }
+        return backend.create(keys).contains(keys[0]);
+    }
+
+    /**
+     * @param emptyTree an empty tree.
+     * @return the number of keys added.
+     */
+    @Benchmark
+    public int add(EmptyTree emptyTree) {
+        int added = 0;
+        for (int key : keys) {
+            added += emptyTree.tree.add(key) ? 1 : 0;
+        }
+        return added;
+    }
+
+    /**
+     * @param fullTree a tree with all the keys.
+     * @return the number of keys deleted.
+     */
+    @Benchmark
+    public int delete(FullTree fullTree) {
+        int deleted = 0;
+        for (int key : keys) {
+            deleted += fullTree.tree.delete(key) ? 1 : 0;
+        }
+        return deleted;
+    }
+}
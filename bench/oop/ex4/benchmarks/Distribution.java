@@ -0,0 +1,82 @@
+package oop.ex4.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * How the keys of a benchmarked tree and the keys of its operations are chosen.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public enum Distribution {
+    /*keys spread over all ints in a random order, operations pick keys uniformly*/
+    RANDOM,
+    /*keys 0..n-1 inserted in order, operations walk the keys in order*/
+    SEQUENTIAL,
+    /*keys 0..n-1 inserted almost in order, each moved up to JITTER places, operations walk them so*/
+    NEARLY_SORTED,
+    /*keys as in RANDOM, operations pick keys with a Zipf (exponent 1) skew towards a few hot keys*/
+    ZIPF;
+
+    /*The number of prepared operation keys, a power of two so a position wraps around with a mask*/
+    static final int OPERATIONS = 1 << 20;
+
+    /*Scrambles indexes into keys, an odd multiplier makes the mapping a bijection of the ints*/
+    private static final int KEY_SCRAMBLER = 0x9E3779B1;
+
+    /*How far a key of NEARLY_SORTED may be from its place*/
+    private static final int JITTER = 16;
+
+    /*The seed of all random choices, so runs are comparable*/
+    static final long SEED = 42;
+
+    /**
+     * The keys of a tree, in insertion order.
+     * @param size the number of keys.
+     * @return distinct keys.
+     */
+    int[] keys(int size) {
+        int[] keys = new int[size];
+        boolean inOrder = this == SEQUENTIAL || this == NEARLY_SORTED;
+        for (int index = 0; index < size; index++) {
+            keys[index] = inOrder ? index : index * KEY_SCRAMBLER;
+        }
+        if (this == NEARLY_SORTED) {
+            SplittableRandom random = new SplittableRandom(SEED + 2);
+            for (int index = 0; index < size; index++) {
+                int other = Math.min(size - 1, index + random.nextInt(JITTER + 1));
+                int key = keys[index];
+                keys[index] = keys[other];
+                keys[other] = key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The keys of the lookup and mixed operations, all of them keys of the tree.
+     * @param keys the keys of the tree.
+     * @return the key of each of the OPERATIONS operations.
+     */
+    int[] operationKeys(int[] keys) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] operationKeys = new int[OPERATIONS];
+        double logOfRange = Math.log(keys.length + 1.0);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int index;
+            switch (this) {
+                case SEQUENTIAL:
+                case NEARLY_SORTED:
+                    index = i % keys.length;
+                    break;
+                case ZIPF:
+                    // inverse of the continuous Zipf(1) distribution over the ranks 0..n-1
+                    index = (int) Math.min(keys.length - 1, Math.exp(random.nextDouble() * logOfRange) - 1);
+                    break;
+                default:
+                    index = random.nextInt(keys.length);
+            }
+            operationKeys[i] = keys[index];
+        }
+        return operationKeys;
+    }
+}
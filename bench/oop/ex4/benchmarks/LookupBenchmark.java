@@ -0,0 +1,122 @@
+package oop.ex4.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and scans of a full tree built from the keys. The tree is shared by all the benchmark threads, so
+ * with -p backend=CONCURRENT -t 1,2,4,8 the time per lookup shows how the readers scale.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    /*The number of keys per lookup of batchContains*/
+    private static final int BATCH_SIZE = 4096;
+
+    @Param({"AVL", "ARRAY", "BTREE", "PERSISTENT", "CONCURRENT"})
+    public BackendKind backend;
+
+    @Param({"RANDOM", "SEQUENTIAL", "NEARLY_SORTED", "ZIPF"})
+    public Distribution distribution;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /*The tree under measurement*/
+    private Backend tree;
+
+    /*The keys of the lookups*/
+    private int[] operationKeys;
+
+    /**
+     * The buffers of a batch lookup, one pair per thread.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        /*The keys of a batch, copied from the operation keys*/
+        final int[] keys = new int[BATCH_SIZE];
+
+        /*The results of a batch*/
+        final int[] depths = new int[BATCH_SIZE];
+    }
+
+    /**
+     * Builds the tree and the lookup keys.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] keys = distribution.keys(size);
+        tree = backend.create(keys);
+        operationKeys = distribution.operationKeys(keys);
+    }
+
+    /**
+     * Releases the tree.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tree.close();
+        Backend.printMetrics();
+    }
+
+    /**
+     * @param position the position of the thread in the lookup keys.
+     * @return the depth of the key.
+     */
+    @Benchmark
+    public int contains(Position position) {
+        return tree.contains(operationKeys[position.next()]);
+    }
+
+    /**
+     * Looks the keys up BATCH_SIZE at a time, with the interleaved contains(int[], int[]) of AvlTree. The
+     * other trees loop over contains, to compare with. The copy into the batch is a small part of a lookup.
+     * @param position the position of the thread in the lookup keys.
+     * @param batch the buffers of the thread.
+     * @return the depth of the first key.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batchContains(Position position, Batch batch) {
+        System.arraycopy(operationKeys, position.skip(BATCH_SIZE), batch.keys, 0, BATCH_SIZE);
+        tree.contains(batch.keys, batch.depths);
+        return batch.depths[0];
+    }
+
+    /**
+     * @return the sum of a full in-order scan, the time is per scan of size keys.
+     */
+    @Benchmark
+    public long iterate() {
+        return tree.scan();
+    }
+
+    /**
+     * @return the sum of a parallel stream of all keys, the time is per scan of size keys.
+     */
+    @Benchmark
+    public long parallelScan() {
+        return tree.parallelScan();
+    }
+}
@@ -0,0 +1,126 @@
+package oop.ex4.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read/write workloads on a full tree, rebuilt for every iteration. Every write deletes a present key or
+ * adds a missing one, so the tree stays about the same size. The tree is shared by all the benchmark
+ * threads, so -t above 1 is only valid with -p backend=CONCURRENT.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedBenchmark {
+
+    @Param({"AVL", "ARRAY", "BTREE", "PERSISTENT", "CONCURRENT"})
+    public BackendKind backend;
+
+    @Param({"RANDOM", "SEQUENTIAL", "NEARLY_SORTED", "ZIPF"})
+    public Distribution distribution;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /*The share of lookups among the operations of mixed*/
+    @Param({"0.5", "0.9", "0.99"})
+    public double readRatio;
+
+    /*The keys of the tree*/
+    private int[] keys;
+
+    /*The keys of the operations*/
+    private int[] operationKeys;
+
+    /*For each operation of mixed, whether it is a lookup*/
+    private boolean[] isRead;
+
+    /*The tree under measurement*/
+    private Backend tree;
+
+    /**
+     * Prepares the keys and the mix of the operations.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = distribution.keys(size);
+        operationKeys = distribution.operationKeys(keys);
+        SplittableRandom random = new SplittableRandom(Distribution.SEED + 1);
+        isRead = new boolean[Distribution.OPERATIONS];
+        for (int i = 0; i < isRead.length; i++) {
+            isRead[i] = random.nextDouble() < readRatio;
+        }
+    }
+
+    /**
+     * Builds a full tree for the iteration.
+     */
+    @Setup(Level.Iteration)
+    public void fillTree() {
+        tree = backend.create(keys);
+    }
+
+    /**
+     * Releases the tree of the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void closeTree() {
+        tree.close();
+    }
+
+    /**
+     * Reports the metrics of the trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Backend.printMetrics();
+    }
+
+    /**
+     * A lookup or a write, in the read ratio.
+     * @param position the position of the thread in the operations.
+     * @return the depth of a looked up key, or whether a missing key was added.
+     */
+    @Benchmark
+    public int mixed(Position position) {
+        int operation = position.next();
+        int key = operationKeys[operation];
+        if (isRead[operation]) {
+            return tree.contains(key);
+        }
+        return tree.delete(key) ? 0 : (tree.add(key) ? 1 : 0);
+    }
+
+    /**
+     * Delete-heavy steady state: deletes a key and adds it back. The time is per delete or add. Does not
+     * depend on the read ratio.
+     * @param position the position of the thread in the operations.
+     * @return whether both changes were made.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean churn(Position position) {
+        int key = operationKeys[position.next()];
+        return tree.delete(key) & tree.add(key);
+    }
+}
@@ -0,0 +1,55 @@
+package oop.ex4.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * The position of a benchmark thread in the prepared operation keys. Every thread starts from its own
+ * share of the operations, so threads sharing a tree do not look up the same keys in lockstep.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+@State(Scope.Thread)
+public class Position {
+
+    /*Wraps a position around the operation keys*/
+    private static final int MASK = Distribution.OPERATIONS - 1;
+
+    /*The index of the next operation*/
+    private int next;
+
+    /**
+     * Starts the thread at its share of the operations.
+     * @param threadParams the thread of this state.
+     */
+    @Setup(Level.Trial)
+    public void start(ThreadParams threadParams) {
+        next = (int) ((long) Distribution.OPERATIONS * threadParams.getThreadIndex() /
+                threadParams.getThreadCount());
+    }
+
+    /**
+     * @return the index of the next operation, wrapping around after the last one.
+     */
+    int next() {
+        return next++ & MASK;
+    }
+
+    /**
+     * Moves past a run of consecutive operations, starting over from the first operation if the run would
+     * go past the last one.
+     * @param count the number of operations, at most OPERATIONS.
+     * @return the index of the first operation of the run.
+     */
+    int skip(int count) {
+        int first = next & MASK;
+        if (first > Distribution.OPERATIONS - count) {
+            first = 0;
+        }
+        next = first + count;
+        return first;
+    }
+}
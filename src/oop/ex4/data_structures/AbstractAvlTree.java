@@ -0,0 +1,334 @@
+package oop.ex4.data_structures;
+
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The shape of an AVL tree whose nodes hold a key of any type: linking new leaves, unlinking removed nodes,
+ * rebalancing with rotations and walking the nodes in order. A subclass declares a node type with its key,
+ * and does the key comparisons, so a primitive key is compared without boxing or comparator calls.
+ * Nothing here is virtual, every node of a tree is handled through the same fields.
+ * AvlTree does not use this class: its nodes also keep subtree sizes and sums that every rotation fixes,
+ * and sharing these call sites with the other trees would slow down the int tree.
+ * @param <N> the node type of the tree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+abstract class AbstractAvlTree<N extends AbstractAvlTree.Node<N>> {
+
+    /*The allowed balance factor in the tree*/
+    private static final int ALLOWED_BALANCE_DIFFERENCE = 2;
+
+    /*Height of a missing child*/
+    private static final int NULL_CHILD = -1;
+
+    /*The number of nodes in the tree*/
+    int numberOfNodes;
+
+    /*The root node of the AVL tree*/
+    N rootNode;
+
+    /**
+     * A node of the tree, same as TreeNode without the data, which the subclass node adds.
+     * @param <N> the node type of the tree.
+     */
+    abstract static class Node<N extends Node<N>> {
+        /*pointers to related nodes*/
+        N parent, leftChild, rightChild;
+
+        /*distance form furthest leaf*/
+        int height;
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return numberOfNodes;
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return rootNode == null ? 0 : rootNode.height;
+    }
+
+    /**
+     * Replaces the content of the tree with a perfectly balanced tree of the given number of nodes, built
+     * in one pass without rotations.
+     * @param nodeCount the number of nodes.
+     * @param nodeAt creates the node of an index, in ascending order of the keys.
+     */
+    void buildBalanced(int nodeCount, IntFunction<N> nodeAt) {
+        rootNode = buildBalancedSubtree(0, nodeCount - 1, null, nodeAt);
+        numberOfNodes = nodeCount;
+    }
+
+    /**
+     * Builds a balanced subtree from a range of indices, the middle index becomes the root of the subtree.
+     * @param from the first index of the range.
+     * @param to the last index of the range (inclusive).
+     * @param parentNode the parent of the subtree root.
+     * @param nodeAt creates the node of an index.
+     * @return the root of the new subtree, null if the range is empty.
+     */
+    private N buildBalancedSubtree(int from, int to, N parentNode, IntFunction<N> nodeAt) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        N subtreeRoot = nodeAt.apply(middle);
+        subtreeRoot.parent = parentNode;
+        subtreeRoot.leftChild = buildBalancedSubtree(from, middle - 1, subtreeRoot, nodeAt);
+        subtreeRoot.rightChild = buildBalancedSubtree(middle + 1, to, subtreeRoot, nodeAt);
+        fixHeight(subtreeRoot);
+        return subtreeRoot;
+    }
+
+    /**
+     * Replaces the content of the tree with a copy of another tree in the same structure. The nodes are
+     * cloned one by one without any comparisons or rotations.
+     * @param source the tree to copy.
+     * @param copyNode creates an unlinked copy of a node.
+     * @param <S> the node type of the source tree.
+     */
+    <S extends Node<S>> void copyFrom(AbstractAvlTree<S> source, Function<? super S, N> copyNode) {
+        rootNode = cloneSubtree(source.rootNode, null, copyNode);
+        numberOfNodes = source.numberOfNodes;
+    }
+
+    /**
+     * Clones a subtree node by node, keeping its shape and heights.
+     * @param sourceNode the root of the subtree to clone.
+     * @param parentNode the parent of the cloned subtree root.
+     * @param copyNode creates an unlinked copy of a node.
+     * @param <S> the node type of the source tree.
+     * @return the root of the cloned subtree, null if sourceNode is null.
+     */
+    private <S extends Node<S>> N cloneSubtree(S sourceNode, N parentNode, Function<? super S, N> copyNode) {
+        if (sourceNode == null) {
+            return null;
+        }
+        N clonedNode = copyNode.apply(sourceNode);
+        clonedNode.parent = parentNode;
+        clonedNode.leftChild = cloneSubtree(sourceNode.leftChild, clonedNode, copyNode);
+        clonedNode.rightChild = cloneSubtree(sourceNode.rightChild, clonedNode, copyNode);
+        clonedNode.height = sourceNode.height;
+        return clonedNode;
+    }
+
+    /**
+     * Hangs a new leaf on the tree and rebalances the path above it.
+     * @param parentNode the node to hang the leaf on, null if the tree is empty.
+     * @param newNode the new leaf.
+     * @param asLeftChild whether the leaf is the left child of parentNode.
+     */
+    void attachLeaf(N parentNode, N newNode, boolean asLeftChild) {
+        newNode.parent = parentNode;
+        if (parentNode == null) {
+            rootNode = newNode;
+        } else {
+            if (asLeftChild) {
+                parentNode.leftChild = newNode;
+            } else {
+                parentNode.rightChild = newNode;
+            }
+            updateTreeHeightLeafUp(parentNode);
+        }
+        numberOfNodes++;
+    }
+
+    /**
+     * Removes a node from the tree and rebalances the path above it. A node with two children is replaced by
+     * its successor node, which is relinked rather than copied, since the keys of a node are final.
+     * @param nodeToRemove a node of the tree.
+     */
+    void unlink(N nodeToRemove) {
+        N nodeToDelete = nodeToRemove;
+        if (nodeToRemove.leftChild != null && nodeToRemove.rightChild != null) {
+            nodeToDelete = leftmostNode(nodeToRemove.rightChild);
+        }
+        N parentNode = nodeToDelete.parent;
+        N childNode = nodeToDelete.leftChild != null ? nodeToDelete.leftChild : nodeToDelete.rightChild;
+        replaceChild(parentNode, nodeToDelete, childNode);
+        N retraceFrom = parentNode;
+        if (nodeToDelete != nodeToRemove) {
+            if (retraceFrom == nodeToRemove) {
+                retraceFrom = nodeToDelete;
+            }
+            nodeToDelete.leftChild = nodeToRemove.leftChild;
+            nodeToDelete.rightChild = nodeToRemove.rightChild;
+            nodeToDelete.height = nodeToRemove.height;
+            if (nodeToDelete.leftChild != null) {
+                nodeToDelete.leftChild.parent = nodeToDelete;
+            }
+            if (nodeToDelete.rightChild != null) {
+                nodeToDelete.rightChild.parent = nodeToDelete;
+            }
+            replaceChild(nodeToRemove.parent, nodeToRemove, nodeToDelete);
+        }
+        updateTreeHeightLeafUp(retraceFrom);
+        numberOfNodes--;
+    }
+
+    /**
+     * @return the node with the smallest key, null if the tree is empty.
+     */
+    N firstNode() {
+        return rootNode == null ? null : leftmostNode(rootNode);
+    }
+
+    /**
+     * @param subtreeRoot the root of a subtree, not null.
+     * @param <N> the node type of the tree.
+     * @return the node with the smallest key in the subtree.
+     */
+    static <N extends Node<N>> N leftmostNode(N subtreeRoot) {
+        while (subtreeRoot.leftChild != null) {
+            subtreeRoot = subtreeRoot.leftChild;
+        }
+        return subtreeRoot;
+    }
+
+    /**
+     * Finds the in order successor of a node using the parent pointers.
+     * @param currentNode a node of the tree.
+     * @param <N> the node type of the tree.
+     * @return the node with the next key, null if currentNode has the largest key.
+     */
+    static <N extends Node<N>> N nextNode(N currentNode) {
+        if (currentNode.rightChild != null) {
+            return leftmostNode(currentNode.rightChild);
+        }
+        N childNode = currentNode;
+        N parentNode = currentNode.parent;
+        while (parentNode != null && parentNode.rightChild == childNode) {
+            childNode = parentNode;
+            parentNode = parentNode.parent;
+        }
+        return parentNode;
+    }
+
+    /**
+     * Update the height of every node from bottom to root, rebalancing with rotations where the AVL
+     * property is violated. Stops as soon as a subtree keeps the height it had before.
+     * @param currentNode the first node to update, may be null.
+     */
+    private void updateTreeHeightLeafUp(N currentNode) {
+        while (currentNode != null) {
+            int previousHeight = currentNode.height;
+            fixHeight(currentNode);
+            currentNode = balanceFactorCheck(currentNode);
+            if (currentNode.height == previousHeight) {
+                return;
+            }
+            currentNode = currentNode.parent;
+        }
+    }
+
+    /*
+     * Sends the node to an appropriate rebalancing function if necessary
+     * @param currentNode - the current node to check.
+     * @return the node that took currentNode place.
+     */
+    private N balanceFactorCheck(N currentNode) {
+        int balanceFactor = heightOf(currentNode.leftChild) - heightOf(currentNode.rightChild);
+        if (Math.abs(balanceFactor) < ALLOWED_BALANCE_DIFFERENCE) {
+            return currentNode;
+        } else if (balanceFactor < 0) {
+            // The imbalance is right heavy.
+            N rightNode = currentNode.rightChild;
+            if (heightOf(rightNode.rightChild) < heightOf(rightNode.leftChild)) {
+                // RL case
+                rightRotate(rightNode);
+            }
+            return leftRotate(currentNode);
+        } else {
+            // The imbalance is left heavy.
+            N leftNode = currentNode.leftChild;
+            if (heightOf(leftNode.rightChild) > heightOf(leftNode.leftChild)) {
+                // LR case
+                leftRotate(leftNode);
+            }
+            return rightRotate(currentNode);
+        }
+    }
+
+    /**
+     * A left rotation to keep the AVL principle
+     * @param currentNode the node to rotate
+     * @return the node that took currentNode place.
+     */
+    private N leftRotate(N currentNode) {
+        N originalRightChild = currentNode.rightChild;
+        N originalParent = currentNode.parent;
+        currentNode.rightChild = originalRightChild.leftChild;
+        if (originalRightChild.leftChild != null) {
+            originalRightChild.leftChild.parent = currentNode;
+        }
+        originalRightChild.leftChild = currentNode;
+        currentNode.parent = originalRightChild;
+        replaceChild(originalParent, currentNode, originalRightChild);
+        fixHeight(currentNode);
+        fixHeight(originalRightChild);
+        return originalRightChild;
+    }
+
+    /**
+     * A right rotation to keep the AVL principle
+     * @param currentNode the node to rotate
+     * @return the node that took currentNode place.
+     */
+    private N rightRotate(N currentNode) {
+        N originalLeftChild = currentNode.leftChild;
+        N originalParent = currentNode.parent;
+        currentNode.leftChild = originalLeftChild.rightChild;
+        if (originalLeftChild.rightChild != null) {
+            originalLeftChild.rightChild.parent = currentNode;
+        }
+        originalLeftChild.rightChild = currentNode;
+        currentNode.parent = originalLeftChild;
+        replaceChild(originalParent, currentNode, originalLeftChild);
+        fixHeight(currentNode);
+        fixHeight(originalLeftChild);
+        return originalLeftChild;
+    }
+
+    /**
+     * Points the parent (or the root) at a new child instead of an old one, and updates the parent of the
+     * new child.
+     * @param parentNode the parent of the old child, null if the old child is the root.
+     * @param oldNode the old child.
+     * @param newNode the new child, may be null.
+     */
+    private void replaceChild(N parentNode, N oldNode, N newNode) {
+        if (parentNode == null) {
+            rootNode = newNode;
+        } else if (parentNode.leftChild == oldNode) {
+            parentNode.leftChild = newNode;
+        } else {
+            parentNode.rightChild = newNode;
+        }
+        if (newNode != null) {
+            newNode.parent = parentNode;
+        }
+    }
+
+    /**
+     * updates the height of a node based upon it's children
+     * @param node the node to update.
+     */
+    private static void fixHeight(Node<?> node) {
+        node.height = Math.max(heightOf(node.leftChild), heightOf(node.rightChild)) + 1;
+    }
+
+    /**
+     * @param node a node, may be null.
+     * @return the height of the node, -1 if null.
+     */
+    private static int heightOf(Node<?> node) {
+        return node == null ? NULL_CHILD : node.height;
+    }
+}
@@ -0,0 +1,757 @@
+package oop.ex4.data_structures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of the AVL tree data structure that keeps its nodes in flat primitive storage instead
+ * of TreeNode objects. A node is an index into the storage, so the tree costs a fixed number of bytes per
+ * key and produces no per-node garbage. The storage is either parallel int arrays on the heap, or a direct
+ * ByteBuffer outside of the heap that the garbage collector never scans (see offHeap). It offers the same
+ * public API as AvlTree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class ArrayAvlTree implements Iterable<Integer> {
+
+    /*The index that marks a missing node (the null pointer of the arrays)*/
+    private static final int NIL = -1;
+
+    /*Height of a missing child, same as in TreeNode*/
+    private static final int NULL_CHILD = -1;
+
+    /*The allowed balance factor in the tree*/
+    private static final int ALLOWED_BALANCE_DIFFERENCE = 2;
+
+    /*The number of slots allocated by the default constructor*/
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /*Number of ints used to store a node: key, left, right, parent, height*/
+    private static final int INTS_PER_NODE = 5;
+
+    /*The node fields, read and written by node index*/
+    private final NodeStorage nodes;
+
+    /*The root node of the AVL tree*/
+    private int rootNode;
+
+    /*The number of nodes in the tree*/
+    private int numberOfNodes;
+
+    /*The lowest slot index that was never used*/
+    private int nextUnusedSlot;
+
+    /*Head of the list of released slots, linked through the left field*/
+    private int freeSlot;
+
+    /**
+     * The default constructor.
+     */
+    public ArrayAvlTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * A constructor that reserves room for the given number of keys up front, so the arrays are not
+     * grown while the tree is filled.
+     *
+     * @param initialCapacity the number of keys to reserve room for.
+     */
+    public ArrayAvlTree(int initialCapacity) {
+        this(new HeapNodeStorage(Math.max(initialCapacity, 1)));
+    }
+
+    /**
+     * A constructor that builds a new tree containing all unique values in an input array. The values are
+     * sorted and placed in slot order, and the tree is built balanced in linear time after sorting.
+     *
+     * @param data the values to add to tree.
+     */
+    public ArrayAvlTree(int[] data) {
+        this(data == null ? DEFAULT_CAPACITY : Math.max(data.length, 1));
+        if (data != null) {
+            buildFromSorted(AvlTree.sortedUnique(data));
+        }
+    }
+
+    /**
+     * Creates an empty tree on the given storage.
+     * @param nodes the node storage.
+     */
+    private ArrayAvlTree(NodeStorage nodes) {
+        this.nodes = nodes;
+        rootNode = NIL;
+        numberOfNodes = 0;
+        nextUnusedSlot = 0;
+        freeSlot = NIL;
+    }
+
+    /**
+     * Creates an empty tree that keeps its nodes in a direct ByteBuffer outside of the heap. The nodes
+     * then add nothing to the heap or to the garbage collection work, at the cost of a bounds checked
+     * buffer access per field. A buffer holds at most Integer.MAX_VALUE bytes, so at most about 100
+     * million keys.
+     *
+     * @param initialCapacity the number of keys to reserve room for.
+     * @return the new tree.
+     */
+    public static ArrayAvlTree offHeap(int initialCapacity) {
+        return new ArrayAvlTree(new OffHeapNodeStorage(Math.max(initialCapacity, 1)));
+    }
+
+    /**
+     * Builds a tree that keeps its nodes outside of the heap, containing all unique values in an input
+     * array.
+     *
+     * @param data the values to add to tree.
+     * @return the new tree.
+     */
+    public static ArrayAvlTree offHeap(int[] data) {
+        ArrayAvlTree arrayTree = offHeap(data == null ? DEFAULT_CAPACITY : data.length);
+        if (data != null) {
+            arrayTree.buildFromSorted(AvlTree.sortedUnique(data));
+        }
+        return arrayTree;
+    }
+
+    /**
+     * Fills the empty tree with the given values, building a perfectly balanced tree in linear time. The
+     * value of index i goes to slot i, so an in order walk reads the storage front to back.
+     * @param sortedValues values in strictly ascending order.
+     */
+    private void buildFromSorted(int[] sortedValues) {
+        if (nodes.capacity() < sortedValues.length) {
+            nodes.resize(sortedValues.length);
+        }
+        rootNode = buildBalancedSubtree(sortedValues, 0, sortedValues.length - 1, NIL);
+        numberOfNodes = sortedValues.length;
+        nextUnusedSlot = sortedValues.length;
+    }
+
+    /**
+     * Builds a balanced subtree from a range of a sorted array, the middle value becomes the root of the
+     * subtree.
+     * @param sortedValues values in strictly ascending order.
+     * @param from the first index of the range.
+     * @param to the last index of the range (inclusive).
+     * @param parentNode the parent of the subtree root.
+     * @return the root of the new subtree, NIL if the range is empty.
+     */
+    private int buildBalancedSubtree(int[] sortedValues, int from, int to, int parentNode) {
+        if (from > to) {
+            return NIL;
+        }
+        int middle = (from + to) >>> 1;
+        nodes.setKey(middle, sortedValues[middle]);
+        nodes.setParent(middle, parentNode);
+        nodes.setLeft(middle, buildBalancedSubtree(sortedValues, from, middle - 1, middle));
+        nodes.setRight(middle, buildBalancedSubtree(sortedValues, middle + 1, to, middle));
+        fixHeight(middle);
+        return middle;
+    }
+
+    /**
+     * Add a new node with the given key to the tree.
+     *
+     * @param newValue the value of the new node to add.
+     * @return true if the value to add is not already in the tree and it was successfully added,
+     * false otherwise.
+     */
+    public boolean add(int newValue) {
+        if (rootNode == NIL) {
+            rootNode = allocateNode(newValue, NIL);
+            numberOfNodes++;
+            return true;
+        }
+        int closestNode = findClosestNode(newValue);
+        if (nodes.key(closestNode) == newValue) {
+            return false;
+        }
+        int newNode = allocateNode(newValue, closestNode);
+        if (newValue < nodes.key(closestNode)) {
+            nodes.setLeft(closestNode, newNode);
+        }
+        else {
+            nodes.setRight(closestNode, newNode);
+        }
+        updateTreeHeightLeafUp(closestNode);
+        numberOfNodes++;
+        return true;
+    }
+
+    /**
+     * Remove the node with the given value from the tree, if it exists.
+     *
+     * @param toDelete the value to remove from the tree.
+     * @return true if the given value was found and deleted, false otherwise.
+     */
+    public boolean delete(int toDelete) {
+        if (rootNode == NIL) {
+            return false;
+        }
+        int closestNode = findClosestNode(toDelete);
+        if (nodes.key(closestNode) != toDelete) {
+            return false;
+        }
+        remove(closestNode);
+        numberOfNodes--;
+        return true;
+    }
+
+    /**
+     * Check whether the tree contains the given input value.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) with the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        int currentNode = rootNode;
+        int depth = 0;
+        while (currentNode != NIL) {
+            if (searchVal == nodes.key(currentNode)) {
+                return depth;
+            }
+            currentNode = searchVal < nodes.key(currentNode) ? nodes.left(currentNode) :
+                    nodes.right(currentNode);
+            depth++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return numberOfNodes;
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        if (rootNode == NIL) {
+            return 0;
+        }
+        return nodes.height(rootNode);
+    }
+
+    /**
+     * Reports how many bytes of node storage the tree holds for every key it contains, including
+     * slots that are allocated but not in use. Useful for sizing the heap, or the direct memory of a tree
+     * made by offHeap.
+     *
+     * @return the number of bytes allocated per stored key, or the bytes of a single node if the tree
+     * is empty.
+     */
+    public double bytesPerKey() {
+        long allocatedBytes = (long) nodes.capacity() * INTS_PER_NODE * Integer.BYTES;
+        if (numberOfNodes == 0) {
+            return INTS_PER_NODE * Integer.BYTES;
+        }
+        return (double) allocatedBytes / numberOfNodes;
+    }
+
+    /**
+     * Shrinks the storage to the smallest size that still holds every slot in use.
+     */
+    public void trimToSize() {
+        if (nextUnusedSlot > 0 && nextUnusedSlot < nodes.capacity()) {
+            nodes.resize(nextUnusedSlot);
+        }
+    }
+
+    /**
+     * @return an Iterator for the tree. The returned iterator goes over the keys in an ascending
+     * order, and does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new ArrayAvlTreeIterator();
+    }
+
+    /**
+     * Finds the node with data closest to the input value, by the BST property. If value is in the
+     * tree returns the matching node. The tree must not be empty.
+     * @param value the value to search for.
+     * @return the index of the closest node.
+     */
+    private int findClosestNode(int value) {
+        int currentNode = rootNode;
+        while (true) {
+            int nextNode;
+            if (value == nodes.key(currentNode)) {
+                return currentNode;
+            }
+            else if (value < nodes.key(currentNode)) {
+                nextNode = nodes.left(currentNode);
+            }
+            else {
+                nextNode = nodes.right(currentNode);
+            }
+            if (nextNode == NIL) {
+                return currentNode;
+            }
+            currentNode = nextNode;
+        }
+    }
+
+    /**
+     * Takes a slot for a new leaf node, from the released slots if there are any.
+     * @param value the data of the new node.
+     * @param parentNode the parent of the new node.
+     * @return the index of the new node.
+     */
+    private int allocateNode(int value, int parentNode) {
+        int newNode;
+        if (freeSlot != NIL) {
+            newNode = freeSlot;
+            freeSlot = nodes.left(freeSlot);
+        }
+        else {
+            int capacity = nodes.capacity();
+            if (nextUnusedSlot == capacity) {
+                nodes.resize(Math.max(capacity + (capacity >> 1), capacity + 1));
+            }
+            newNode = nextUnusedSlot++;
+        }
+        nodes.setKey(newNode, value);
+        nodes.setLeft(newNode, NIL);
+        nodes.setRight(newNode, NIL);
+        nodes.setParent(newNode, parentNode);
+        nodes.setHeight(newNode, 0);
+        return newNode;
+    }
+
+    /**
+     * Returns a slot to the released slots list.
+     * @param node the node to release.
+     */
+    private void releaseNode(int node) {
+        nodes.setLeft(node, freeSlot);
+        freeSlot = node;
+    }
+
+    /**
+     * Helper function for delete, deals with the three different cases of deletion by the BST property,
+     * than checks to keep the AVL property.
+     * @param nodeToDelete the node to delete
+     */
+    private void remove(int nodeToDelete) {
+        if (nodes.left(nodeToDelete) != NIL && nodes.right(nodeToDelete) != NIL) {
+            int nodeToSwitch = nodes.right(nodeToDelete);
+            while (nodes.left(nodeToSwitch) != NIL) {
+                nodeToSwitch = nodes.left(nodeToSwitch);
+            }
+            nodes.setKey(nodeToDelete, nodes.key(nodeToSwitch));
+            nodeToDelete = nodeToSwitch;
+        }
+        int parentNode = nodes.parent(nodeToDelete);
+        int childNode = nodes.left(nodeToDelete) != NIL ? nodes.left(nodeToDelete) :
+                nodes.right(nodeToDelete);
+        replaceChild(parentNode, nodeToDelete, childNode);
+        releaseNode(nodeToDelete);
+        if (parentNode != NIL) {
+            updateTreeHeightLeafUp(parentNode);
+        }
+    }
+
+    /**
+     * Update the height of every node from the given node to the root. Check at each level that the AVL
+     * property is not violated, if yes, rebalance the tree with rotations. Stops as soon as a subtree ends
+     * up with the same height it had before.
+     * @param currentNode the node to start from.
+     */
+    private void updateTreeHeightLeafUp(int currentNode) {
+        while (currentNode != NIL) {
+            int previousHeight = nodes.height(currentNode);
+            fixHeight(currentNode);
+            currentNode = balanceFactorCheck(currentNode);
+            if (nodes.height(currentNode) == previousHeight) {
+                return;
+            }
+            currentNode = nodes.parent(currentNode);
+        }
+    }
+
+    /*
+     * Sends the node to an appropriate rebalancing function if necessary
+     * @param currentNode - the current node to check.
+     * @return the node that took currentNode place.
+     */
+    private int balanceFactorCheck(int currentNode) {
+        int balanceFactor = childHeight(nodes.left(currentNode)) - childHeight(nodes.right(currentNode));
+        if (Math.abs(balanceFactor) < ALLOWED_BALANCE_DIFFERENCE) {
+            return currentNode;
+        }
+        else if (balanceFactor < 0) {
+            // The imbalance is right heavy.
+            int rightNode = nodes.right(currentNode);
+            if (childHeight(nodes.right(rightNode)) < childHeight(nodes.left(rightNode))) {
+                // RL case
+                rightRotate(rightNode);
+            }
+            return leftRotate(currentNode);
+        }
+        else {
+            // The imbalance is left heavy.
+            int leftNode = nodes.left(currentNode);
+            if (childHeight(nodes.right(leftNode)) > childHeight(nodes.left(leftNode))) {
+                // LR case
+                leftRotate(leftNode);
+            }
+            return rightRotate(currentNode);
+        }
+    }
+
+    /**
+     * A left rotation to keep the AVL principle
+     * @param currentNode the node to rotate
+     * @return the node that took currentNode place.
+     */
+    private int leftRotate(int currentNode) {
+        int originalRightChild = nodes.right(currentNode);
+        int originalParent = nodes.parent(currentNode);
+        nodes.setRight(currentNode, nodes.left(originalRightChild));
+        if (nodes.left(originalRightChild) != NIL) {
+            nodes.setParent(nodes.left(originalRightChild), currentNode);
+        }
+        nodes.setLeft(originalRightChild, currentNode);
+        nodes.setParent(currentNode, originalRightChild);
+        replaceChild(originalParent, currentNode, originalRightChild);
+        fixHeight(currentNode);
+        fixHeight(originalRightChild);
+        return originalRightChild;
+    }
+
+    /**
+     * A right rotation to keep the AVL principle
+     * @param currentNode the node to rotate
+     * @return the node that took currentNode place.
+     */
+    private int rightRotate(int currentNode) {
+        int originalLeftChild = nodes.left(currentNode);
+        int originalParent = nodes.parent(currentNode);
+        nodes.setLeft(currentNode, nodes.right(originalLeftChild));
+        if (nodes.right(originalLeftChild) != NIL) {
+            nodes.setParent(nodes.right(originalLeftChild), currentNode);
+        }
+        nodes.setRight(originalLeftChild, currentNode);
+        nodes.setParent(currentNode, originalLeftChild);
+        replaceChild(originalParent, currentNode, originalLeftChild);
+        fixHeight(currentNode);
+        fixHeight(originalLeftChild);
+        return originalLeftChild;
+    }
+
+    /**
+     * Points the parent (or the root) at a new child instead of an old one, and updates the parent of
+     * the new child.
+     * @param parentNode the parent of the old child, NIL if the old child is the root.
+     * @param oldNode the old child.
+     * @param newNode the new child, may be NIL.
+     */
+    private void replaceChild(int parentNode, int oldNode, int newNode) {
+        if (parentNode == NIL) {
+            rootNode = newNode;
+        }
+        else if (nodes.left(parentNode) == oldNode) {
+            nodes.setLeft(parentNode, newNode);
+        }
+        else {
+            nodes.setRight(parentNode, newNode);
+        }
+        if (newNode != NIL) {
+            nodes.setParent(newNode, parentNode);
+        }
+    }
+
+    /**
+     * updates the height of a node based upon it's children
+     * @param node the node to update.
+     */
+    private void fixHeight(int node) {
+        nodes.setHeight(node, Math.max(childHeight(nodes.left(node)), childHeight(nodes.right(node))) + 1);
+    }
+
+    /**
+     * @param node a node, may be NIL.
+     * @return the height of the node, -1 if NIL.
+     */
+    private int childHeight(int node) {
+        return node == NIL ? NULL_CHILD : nodes.height(node);
+    }
+
+    /**
+     * The fields of the nodes, addressed by node index. Every field of a slot is an int.
+     */
+    private abstract static class NodeStorage {
+        abstract int key(int node);
+
+        abstract int left(int node);
+
+        abstract int right(int node);
+
+        abstract int parent(int node);
+
+        abstract int height(int node);
+
+        abstract void setKey(int node, int value);
+
+        abstract void setLeft(int node, int value);
+
+        abstract void setRight(int node, int value);
+
+        abstract void setParent(int node, int value);
+
+        abstract void setHeight(int node, int value);
+
+        /**
+         * @return the number of slots the storage holds.
+         */
+        abstract int capacity();
+
+        /**
+         * Grows or shrinks the storage, keeping the slots below the new capacity.
+         * @param newCapacity the new number of slots.
+         */
+        abstract void resize(int newCapacity);
+    }
+
+    /**
+     * Node storage in parallel int arrays on the heap, one array per field.
+     */
+    private static final class HeapNodeStorage extends NodeStorage {
+        /*The node data arrays, indexed by node*/
+        private int[] key, left, right, parent, height;
+
+        /**
+         * @param capacity the number of slots to allocate.
+         */
+        HeapNodeStorage(int capacity) {
+            key = new int[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            parent = new int[capacity];
+            height = new int[capacity];
+        }
+
+        @Override
+        int key(int node) {
+            return key[node];
+        }
+
+        @Override
+        int left(int node) {
+            return left[node];
+        }
+
+        @Override
+        int right(int node) {
+            return right[node];
+        }
+
+        @Override
+        int parent(int node) {
+            return parent[node];
+        }
+
+        @Override
+        int height(int node) {
+            return height[node];
+        }
+
+        @Override
+        void setKey(int node, int value) {
+            key[node] = value;
+        }
+
+        @Override
+        void setLeft(int node, int value) {
+            left[node] = value;
+        }
+
+        @Override
+        void setRight(int node, int value) {
+            right[node] = value;
+        }
+
+        @Override
+        void setParent(int node, int value) {
+            parent[node] = value;
+        }
+
+        @Override
+        void setHeight(int node, int value) {
+            height[node] = value;
+        }
+
+        @Override
+        int capacity() {
+            return key.length;
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            key = Arrays.copyOf(key, newCapacity);
+            left = Arrays.copyOf(left, newCapacity);
+            right = Arrays.copyOf(right, newCapacity);
+            parent = Arrays.copyOf(parent, newCapacity);
+            height = Arrays.copyOf(height, newCapacity);
+        }
+    }
+
+    /**
+     * Node storage in a direct ByteBuffer outside of the heap. The fields of a node are next to each other,
+     * so a node is one 20 byte record and a lookup touches one cache line per level.
+     */
+    private static final class OffHeapNodeStorage extends NodeStorage {
+        /*The size of a node record in bytes*/
+        private static final int NODE_BYTES = INTS_PER_NODE * Integer.BYTES;
+
+        /*The byte offsets of the fields inside a node record*/
+        private static final int KEY = 0, LEFT = 4, RIGHT = 8, PARENT = 12, HEIGHT = 16;
+
+        /*The node records, indexed by node * NODE_BYTES*/
+        private ByteBuffer buffer;
+
+        /**
+         * @param capacity the number of slots to allocate.
+         */
+        OffHeapNodeStorage(int capacity) {
+            buffer = allocate(capacity);
+        }
+
+        /**
+         * @param capacity a number of slots.
+         * @return a direct buffer in the native byte order with room for the slots.
+         */
+        private static ByteBuffer allocate(int capacity) {
+            if (capacity > Integer.MAX_VALUE / NODE_BYTES) {
+                throw new IllegalStateException("off heap tree is limited to " +
+                        Integer.MAX_VALUE / NODE_BYTES + " nodes");
+            }
+            return ByteBuffer.allocateDirect(capacity * NODE_BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        int key(int node) {
+            return buffer.getInt(node * NODE_BYTES + KEY);
+        }
+
+        @Override
+        int left(int node) {
+            return buffer.getInt(node * NODE_BYTES + LEFT);
+        }
+
+        @Override
+        int right(int node) {
+            return buffer.getInt(node * NODE_BYTES + RIGHT);
+        }
+
+        @Override
+        int parent(int node) {
+            return buffer.getInt(node * NODE_BYTES + PARENT);
+        }
+
+        @Override
+        int height(int node) {
+            return buffer.getInt(node * NODE_BYTES + HEIGHT);
+        }
+
+        @Override
+        void setKey(int node, int value) {
+            buffer.putInt(node * NODE_BYTES + KEY, value);
+        }
+
+        @Override
+        void setLeft(int node, int value) {
+            buffer.putInt(node * NODE_BYTES + LEFT, value);
+        }
+
+        @Override
+        void setRight(int node, int value) {
+            buffer.putInt(node * NODE_BYTES + RIGHT, value);
+        }
+
+        @Override
+        void setParent(int node, int value) {
+            buffer.putInt(node * NODE_BYTES + PARENT, value);
+        }
+
+        @Override
+        void setHeight(int node, int value) {
+            buffer.putInt(node * NODE_BYTES + HEIGHT, value);
+        }
+
+        @Override
+        int capacity() {
+            return buffer.capacity() / NODE_BYTES;
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            ByteBuffer newBuffer = allocate(newCapacity);
+            ByteBuffer usedSlots = buffer.duplicate();
+            usedSlots.position(0).limit(Math.min(buffer.capacity(), newBuffer.capacity()));
+            newBuffer.put(usedSlots).clear();
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * The Iterator object of an ArrayAvlTree. Walks the tree in order using the parent links.
+     */
+    private class ArrayAvlTreeIterator implements Iterator<Integer> {
+        int nextNode;
+
+        /**
+         * Starts the iterator at the smallest key.
+         */
+        ArrayAvlTreeIterator() {
+            nextNode = rootNode;
+            if (nextNode != NIL) {
+                while (nodes.left(nextNode) != NIL) {
+                    nextNode = nodes.left(nextNode);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != NIL;
+        }
+
+        @Override
+        public Integer next() {
+            if (nextNode == NIL) {
+                throw new NoSuchElementException();
+            }
+            int currentNode = nextNode;
+            if (nodes.right(currentNode) != NIL) {
+                nextNode = nodes.right(currentNode);
+                while (nodes.left(nextNode) != NIL) {
+                    nextNode = nodes.left(nextNode);
+                }
+            }
+            else {
+                int childNode = currentNode;
+                nextNode = nodes.parent(currentNode);
+                while (nextNode != NIL && nodes.right(nextNode) == childNode) {
+                    childNode = nextNode;
+                    nextNode = nodes.parent(nextNode);
+                }
+            }
+            return nodes.key(currentNode);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package oop.ex4.data_structures;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * An implementation of the AVL tree data structure.
@@ -25,6 +35,35 @@ public class AvlTree implements Iterable<Integer> {
     /*The allowed balance factor in the tree*/
     private static final int ALLOWED_BALANCE_DIFFERENCE =2;
 
+    /*Inputs at least this long are sorted with the parallel sort*/
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    /*Bulk builds of at least this many values build the two halves of each subtree in parallel*/
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 14;
+
+    /*Set operations on at least this many nodes run their two halves in parallel*/
+    private static final int PARALLEL_SET_OPERATION_THRESHOLD = 1 << 13;
+
+    /*The number of lookups a batch lookup keeps in flight at once*/
+    private static final int BATCH_LANES = 16;
+
+    /*Smaller trees stay in the cache, so their lookups do not wait on memory and are not interleaved*/
+    private static final int INTERLEAVED_BATCH_MIN_NODES = 1 << 15;
+
+    /*A batch whose consecutive values are on average at most this many times the average distance between
+    values of the tree apart is looked up in its own order, as consecutive descents share most of their path*/
+    private static final int LOCAL_BATCH_GAP = 64;
+
+    /*Batches of at least this many values are looked up in ascending order if dense enough*/
+    private static final int SORTED_BATCH_THRESHOLD = 1 << 10;
+
+    /*A sorted batch has at least 1/SORTED_BATCH_DENSITY as many values as the tree, sparser batches share
+    too little of their paths to pay for the sort*/
+    private static final int SORTED_BATCH_DENSITY = 4;
+
+    /*How many times cheaper a node visit during a rebuild is than a node visit during a single add/delete*/
+    private static final int REBUILD_COST_FACTOR = 4;
+
     /*Relationship between a node and it's parent*/
     private enum kindOfChild{RIGHT_CHILD, LEFT_CHILD, NO_PARENT};
 
@@ -34,6 +73,21 @@ public class AvlTree implements Iterable<Integer> {
     /*The root node of the AVL tree*/
     private TreeNode rootNode;
 
+    /*Counts the insertions and removals of nodes, so a cursor can tell its node may be gone*/
+    private int modCount;
+
+    /*A node is rebalanced when the heights of its subtrees differ by this much, strict AVL by default*/
+    private int allowedBalanceDifference = ALLOWED_BALANCE_DIFFERENCE;
+
+    /*Removed nodes kept for reuse by later insertions, linked through their right child pointers*/
+    private TreeNode pooledNodes;
+
+    /*The number of nodes in the pool, and the most it may hold (0 turns pooling off)*/
+    private int pooledNodeCount, nodePoolCapacity;
+
+    /*Whether the nodes are SummedTreeNodes, which answer sum and sumInRange in O(log n)*/
+    private boolean subtreeSumsEnabled;
+
 
     /**
      * The default constructor.
@@ -45,32 +99,135 @@ public class AvlTree implements Iterable<Integer> {
 
     /**
      * A constructor that builds a new AVL tree containing all unique values in an input
-     * array.
+     * array. The values are sorted and the tree is built balanced in one pass, without rotations. Large
+     * inputs are sorted with the parallel sort and their subtrees are built in parallel on the common
+     * fork/join pool.
      *
      * @param data the values to add to tree.
      */
     public AvlTree(int[] data) {
         this();
-        if (data !=null) {
-            for (int i : data) {
-                this.add(i);
-            }
+        if (data != null) {
+            buildFromSorted(sortedUnique(data));
         }
     }
 
     /**
      * A copy constructor that creates a deep copy of the given AvlTree. The new tree
-     * contains all the values of the given tree, but not necessarily in the same structure.
+     * contains all the values of the given tree in the same structure, the nodes are cloned one by one
+     * without any comparisons or rotations.
      *
      * @param avlTree an AVL tree.
      */
     public AvlTree(AvlTree avlTree) {  //edge case
         this();
         if(avlTree != null){
-            for (int i: avlTree) {
-                add(i);
+            rootNode = cloneSubtree(avlTree.rootNode, null, avlTree.subtreeSumsEnabled);
+            numberOfNodes = avlTree.numberOfNodes;
+            allowedBalanceDifference = avlTree.allowedBalanceDifference;
+            nodePoolCapacity = avlTree.nodePoolCapacity;
+            subtreeSumsEnabled = avlTree.subtreeSumsEnabled;
+        }
+    }
+
+    /**
+     * Clones a subtree node by node, keeping its shape and heights.
+     * @param sourceNode the root of the subtree to clone.
+     * @param parentNode the parent of the cloned subtree root.
+     * @param summed whether the clones keep subtree sums.
+     * @return the root of the cloned subtree, null if sourceNode is null.
+     */
+    private static TreeNode cloneSubtree(TreeNode sourceNode, TreeNode parentNode, boolean summed) {
+        if (sourceNode == null) {
+            return null;
+        }
+        TreeNode clonedNode = createNode(sourceNode.getData(), parentNode, summed);
+        clonedNode.setLeftChild(cloneSubtree(sourceNode.getLeftChild(), clonedNode, summed));
+        clonedNode.setRightChild(cloneSubtree(sourceNode.getRightChild(), clonedNode, summed));
+        clonedNode.fixHeight();
+        return clonedNode;
+    }
+
+    /**
+     * @param value the data for the new node.
+     * @param parentNode the father of the new node, null for the root.
+     * @param summed whether the node keeps the sum of its subtree.
+     * @return a new leaf node holding the value.
+     */
+    private static TreeNode createNode(int value, TreeNode parentNode, boolean summed) {
+        return summed ? new SummedTreeNode(value, parentNode) : new TreeNode(value, parentNode);
+    }
+
+    /**
+     * Returns a sorted copy of the input with every value appearing once.
+     * @param data the values to sort.
+     * @return a new sorted array without duplicates.
+     */
+    static int[] sortedUnique(int[] data) {
+        int[] sorted = data.clone();
+        if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(sorted);
+        }
+        else {
+            Arrays.sort(sorted);
+        }
+        int uniqueCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (uniqueCount == 0 || sorted[i] != sorted[uniqueCount - 1]) {
+                sorted[uniqueCount++] = sorted[i];
             }
         }
+        return uniqueCount == sorted.length ? sorted : Arrays.copyOf(sorted, uniqueCount);
+    }
+
+    /**
+     * Builds a balanced tree from values that are already sorted and unique, such as the values of a
+     * tree file.
+     * @param sortedValues values in strictly ascending order, owned by the caller.
+     * @return a new tree with the values.
+     */
+    static AvlTree fromSortedUnique(int[] sortedValues) {
+        AvlTree avlTree = new AvlTree();
+        avlTree.buildFromSorted(sortedValues);
+        return avlTree;
+    }
+
+    /**
+     * Replaces the content of the tree with the given values, building a perfectly balanced tree in
+     * linear time.
+     * @param sortedValues values in strictly ascending order.
+     */
+    private void buildFromSorted(int[] sortedValues) {
+        rootNode = buildBalancedSubtree(sortedValues, 0, sortedValues.length - 1, null, subtreeSumsEnabled);
+        numberOfNodes = sortedValues.length;
+        modCount++;
+    }
+
+    /**
+     * Builds a balanced subtree from a range of a sorted array, the middle value becomes the root of the
+     * subtree. The two halves of a large range are built in parallel.
+     * @param sortedValues values in strictly ascending order.
+     * @param from the first index of the range.
+     * @param to the last index of the range (inclusive).
+     * @param parentNode the parent of the subtree root.
+     * @param summed whether the nodes keep subtree sums.
+     * @return the root of the new subtree, null if the range is empty.
+     */
+    private static TreeNode buildBalancedSubtree(int[] sortedValues, int from, int to, TreeNode parentNode,
+                                                 boolean summed) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        TreeNode subtreeRoot = createNode(sortedValues[middle], parentNode, summed);
+        TreeNode[] children = bothSides(
+                () -> buildBalancedSubtree(sortedValues, from, middle - 1, subtreeRoot, summed),
+                () -> buildBalancedSubtree(sortedValues, middle + 1, to, subtreeRoot, summed),
+                to - from + 1 >= PARALLEL_BUILD_THRESHOLD);
+        subtreeRoot.setLeftChild(children[0]);
+        subtreeRoot.setRightChild(children[1]);
+        subtreeRoot.fixHeight();
+        return subtreeRoot;
     }
 
     /**
@@ -102,10 +259,26 @@ public class AvlTree implements Iterable<Integer> {
      * false otherwise.
      */
     public boolean add(int newValue) {
+        if (!AvlTreeMetrics.ENABLED) {
+            return addValue(newValue);
+        }
+        long start = System.nanoTime();
+        boolean added = addValue(newValue);
+        AvlTreeMetrics.recordAdd(System.nanoTime() - start);
+        return added;
+    }
+
+    /**
+     * The add operation itself, add only measures it when the metrics are on.
+     * @param newValue the value of the new node to add.
+     * @return true if the value was added, false if it is already in the tree.
+     */
+    private boolean addValue(int newValue) {
         //If this is empty tree - make the newValue it's data.
         if (this.rootNode == null) {
-            this.rootNode = new TreeNode(newValue);  // initialize empty node
+            this.rootNode = newNode(newValue, null);  // initialize empty node
             numberOfNodes++;
+            modCount++;
             return true;
         } else {
             TreeNode closestNode = findClosestNode(newValue, rootNode);
@@ -123,58 +296,90 @@ public class AvlTree implements Iterable<Integer> {
     /**
      * This function aids add, delete and contains, by finding the node in the tree with data closest to the
      * input value,
-     * it makes use of the BST property,
+     * it makes use of the BST property, walking down from the given node in a loop.
      * @param value the value to search for.
-     * @param currentNode the node we are at
+     * @param currentNode the node to start the search from.
      * @return the node with the closest data to inputed value. if value is in the tree returns tha
      * matching node
      */
     private TreeNode findClosestNode(int value, TreeNode currentNode) {
-        if (value == currentNode.getData()) {
-            return currentNode;
-        } else if (value < currentNode.getData()) {
-            if (currentNode.getLeftChild() == null) {
-                return currentNode;
+        int nodesVisited = 1;
+        while (true) {
+            TreeNode nextNode;
+            if (value == currentNode.getData()) {
+                break;
+            } else if (value < currentNode.getData()) {
+                nextNode = currentNode.getLeftChild();
             } else {
-                return findClosestNode(value, currentNode.getLeftChild());
+                // value > currentNode.getData()
+                nextNode = currentNode.getRightChild();
             }
-        } else {
-            // value > currentNode.getData()
-            if (currentNode.getRightChild() == null) {
-                return currentNode;
-            } else {
-                return findClosestNode(value, currentNode.getRightChild());
+            if (nextNode == null) {
+                break;
             }
+            currentNode = nextNode;
+            nodesVisited++;
+        }
+        if (AvlTreeMetrics.ENABLED) {
+            AvlTreeMetrics.recordSearch(nodesVisited);
         }
+        return currentNode;
     }
 
     /**
      * Inset a child to a leaf node.
      * @param parentNode the father of the new node.
      * @param value the data for the new node.
+     * @return the new node.
      */
-    private void insertNewNode(TreeNode parentNode, int value){
+    private TreeNode insertNewNode(TreeNode parentNode, int value){
+        TreeNode newNode = newNode(value, parentNode);
         if (value < parentNode.getData()){
-            parentNode.setLeftChild(new TreeNode(value, parentNode));
-            updateTreeHeightLeafUp(parentNode);
+            parentNode.setLeftChild(newNode);
         }
         else {
             //value > parentNode.getData()
-            parentNode.setRightChild(new TreeNode(value, parentNode));
-            updateTreeHeightLeafUp(parentNode);
+            parentNode.setRightChild(newNode);
         }
+        updateTreeHeightLeafUp(parentNode);
+        modCount++;
+        return newNode;
     }
 
     /**
      * Update the height of every node from bottom to root. Check at each level that the AVL property is
-     * not violated, if yes, rebalance the tree with rotations
+     * not violated, if yes, rebalance the tree with rotations. Stops rebalancing as soon as a subtree ends up
+     * with the same height it had before, since no height above it can change, only the sizes are updated
+     * from there to the root.
      * @param currentNode - the current node to update.
      */
     private void updateTreeHeightLeafUp(TreeNode currentNode){
-        currentNode.fixHeight();
-        currentNode = balanceFactorCheck(currentNode);
-        if (currentNode != rootNode){
-            updateTreeHeightLeafUp(currentNode.getParent());
+        int nodesVisited = 0;
+        while (currentNode != null) {
+            nodesVisited++;
+            int previousHeight = currentNode.getHeight();
+            currentNode.fixHeight();
+            currentNode = balanceFactorCheck(currentNode);
+            if (currentNode.getHeight() == previousHeight) {
+                updateSizeLeafUp(currentNode.getParent());
+                break;
+            }
+            currentNode = currentNode.getParent();
+        }
+        if (AvlTreeMetrics.ENABLED) {
+            AvlTreeMetrics.recordRetrace(nodesVisited);
+        }
+    }
+
+    /**
+     * Update the subtree size of every node from the given node to the root. Used once the heights are
+     * stable, the sizes above still change on every insertion and deletion.
+     * @param currentNode the first node to update, may be null.
+     */
+    private static void updateSizeLeafUp(TreeNode currentNode) {
+        while (currentNode != null) {
+            currentNode.fixSize();
+            currentNode = currentNode.getParent();
         }
     }
 
@@ -185,7 +390,7 @@ public class AvlTree implements Iterable<Integer> {
      */
     private TreeNode balanceFactorCheck(TreeNode currentNode){
         int balanceFactor = currentNode.getLeftChildHeight() - currentNode.getRightChildHeight();
-        if (Math.abs(balanceFactor) < ALLOWED_BALANCE_DIFFERENCE) {
+        if (Math.abs(balanceFactor) < allowedBalanceDifference) {
             return currentNode;
         }
         else if (balanceFactor < 0) {
@@ -193,11 +398,17 @@ public class AvlTree implements Iterable<Integer> {
             if (currentNode.getRightChild().getRightChildHeight() <
                     currentNode.getRightChild().getLeftChildHeight()) {
                 // RL case
+                if (AvlTreeMetrics.ENABLED) {
+                    AvlTreeMetrics.recordRotation(true);
+                }
                 rightRotate(currentNode.getRightChild());
                 return leftRotate(currentNode);
             }
             else {
                 // RR case
+                if (AvlTreeMetrics.ENABLED) {
+                    AvlTreeMetrics.recordRotation(false);
+                }
                 return leftRotate(currentNode);
             }
         }
@@ -206,11 +417,17 @@ public class AvlTree implements Iterable<Integer> {
             if (currentNode.getLeftChild().getRightChildHeight() >
                     currentNode.getLeftChild().getLeftChildHeight()) {
                 // LR case
+                if (AvlTreeMetrics.ENABLED) {
+                    AvlTreeMetrics.recordRotation(true);
+                }
                 leftRotate(currentNode.getLeftChild());
                 return rightRotate(currentNode);
             }
             else {
                 // LL case
+                if (AvlTreeMetrics.ENABLED) {
+                    AvlTreeMetrics.recordRotation(false);
+                }
                 return rightRotate(currentNode);
             }
         }
@@ -287,21 +504,170 @@ public class AvlTree implements Iterable<Integer> {
      * the tree, -1 otherwise.
      */
     public int contains(int searchVal) {
-        if (rootNode != null) {  // edge case
-            TreeNode result = findClosestNode(searchVal, rootNode);
-            if (result.getData() == searchVal) {
-                int distanceFromRoot = 0;
-                while (result.getParent() != null){
-                    distanceFromRoot++;
-                    result = result.getParent();
-                }
+        TreeNode currentNode = rootNode;
+        int distanceFromRoot = 0;
+        while (currentNode != null) {  // counts the depth on the way down
+            if (searchVal == currentNode.getData()) {
                 return distanceFromRoot;
             }
+            currentNode = searchVal < currentNode.getData() ? currentNode.getLeftChild() :
+                    currentNode.getRightChild();
+            distanceFromRoot++;
         }
         return -1; //-1 in this case isn't a magic number -
             // https://moodle2.cs.huji.ac.il/nu17/mod/forum/discuss.php?d=34648#p52614
     }
 
+    /**
+     * Looks up a batch of values, giving the same result for each as contains. The lookups are interleaved:
+     * BATCH_LANES descents advance a level at a time in turn, so the memory accesses of different lookups
+     * overlap instead of each one waiting for the previous node to load, and a lane that finishes takes the
+     * next value right away. Batches that are large next to the tree are taken in ascending order, so
+     * consecutive descents share most of their paths in the cache. Lookups in a small tree, or of a batch
+     * whose consecutive values are close, already find their nodes in the cache and are done one at a time.
+     *
+     * @param keys the values to search for.
+     * @param depthsOut receives, at the index of each value, the depth of its node (0 for the root) or -1
+     *                  if it is not in the tree. May be the keys array itself.
+     * @throws IllegalArgumentException if depthsOut is shorter than keys.
+     */
+    public void contains(int[] keys, int[] depthsOut) {
+        if (depthsOut.length < keys.length) {
+            throw new IllegalArgumentException("depthsOut is shorter than keys: " + depthsOut.length + " < " +
+                    keys.length);
+        }
+        if (rootNode == null) {
+            Arrays.fill(depthsOut, 0, keys.length, -1);
+            return;
+        }
+        if (numberOfNodes < INTERLEAVED_BATCH_MIN_NODES || isLocal(keys)) {
+            for (int index = 0; index < keys.length; index++) {
+                depthsOut[index] = contains(keys[index]);
+            }
+            return;
+        }
+        int[] order = keys.length >= SORTED_BATCH_THRESHOLD &&
+                keys.length >= numberOfNodes / SORTED_BATCH_DENSITY ? ascendingOrder(keys) : null;
+        int laneCount = Math.min(BATCH_LANES, keys.length);
+        TreeNode[] laneNodes = new TreeNode[laneCount];
+        int[] laneKeyIndexes = new int[laneCount];
+        int[] laneValues = new int[laneCount];
+        int[] laneDepths = new int[laneCount];
+        int nextPosition = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            laneKeyIndexes[lane] = order == null ? nextPosition : order[nextPosition];
+            laneValues[lane] = keys[laneKeyIndexes[lane]];
+            laneNodes[lane] = rootNode;
+            nextPosition++;
+        }
+        int activeLanes = laneCount;
+        while (activeLanes > 0) {
+            for (int lane = 0; lane < laneCount; lane++) {
+                TreeNode currentNode = laneNodes[lane];
+                if (currentNode == null) {
+                    continue;
+                }
+                int searchVal = laneValues[lane];
+                if (searchVal == currentNode.getData()) {
+                    currentNode = null;
+                    depthsOut[laneKeyIndexes[lane]] = laneDepths[lane];
+                } else {
+                    currentNode = searchVal < currentNode.getData() ? currentNode.getLeftChild() :
+                            currentNode.getRightChild();
+                    laneDepths[lane]++;
+                    if (currentNode == null) {
+                        depthsOut[laneKeyIndexes[lane]] = -1;
+                    }
+                }
+                if (currentNode == null) {
+                    // the lookup is done, the lane starts on the next value
+                    if (nextPosition < keys.length) {
+                        int keyIndex = order == null ? nextPosition : order[nextPosition];
+                        laneKeyIndexes[lane] = keyIndex;
+                        laneValues[lane] = keys[keyIndex];
+                        laneDepths[lane] = 0;
+                        currentNode = rootNode;
+                        nextPosition++;
+                    } else {
+                        activeLanes--;
+                    }
+                }
+                laneNodes[lane] = currentNode;
+            }
+        }
+    }
+
+    /**
+     * Looks up a batch of values in the same way as contains(int[], int[]).
+     *
+     * @param keys the values to search for.
+     * @return a bitmap with the bit of each index set if the value at that index is in the tree.
+     */
+    public BitSet containsKeys(int[] keys) {
+        int[] depths = new int[keys.length];
+        contains(keys, depths);
+        BitSet found = new BitSet(keys.length);
+        for (int index = 0; index < keys.length; index++) {
+            if (depths[index] >= 0) {
+                found.set(index);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param keys values, the tree is not empty.
+     * @return whether consecutive values are on average within LOCAL_BATCH_GAP values of the tree.
+     */
+    private boolean isLocal(int[] keys) {
+        double totalGap = 0;
+        for (int index = 1; index < keys.length; index++) {
+            totalGap += Math.abs((long) keys[index] - keys[index - 1]);
+        }
+        double treeGap = ((double) last() - first()) / numberOfNodes;
+        return totalGap <= treeGap * LOCAL_BATCH_GAP * (keys.length - 1);
+    }
+
+    /**
+     * @param keys values.
+     * @return the indexes of the values, ordered by ascending value.
+     */
+    private static int[] ascendingOrder(int[] keys) {
+        // the value in the high half keeps the signed order, the index in the low half is never negative
+        long[] valuesAndIndexes = new long[keys.length];
+        for (int index = 0; index < keys.length; index++) {
+            valuesAndIndexes[index] = (long) keys[index] << Integer.SIZE | index;
+        }
+        if (valuesAndIndexes.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(valuesAndIndexes);
+        } else {
+            Arrays.sort(valuesAndIndexes);
+        }
+        int[] order = new int[keys.length];
+        for (int position = 0; position < keys.length; position++) {
+            order[position] = (int) valuesAndIndexes[position];
+        }
+        return order;
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        TreeNode currentNode = rootNode;
+        while (currentNode != null) {
+            if (searchVal == currentNode.getData()) {
+                return true;
+            }
+            currentNode = searchVal < currentNode.getData() ? currentNode.getLeftChild() :
+                    currentNode.getRightChild();
+        }
+        return false;
+    }
+
 
     /**
      * Remove the node with the given value from the tree, if it exists.
@@ -310,6 +676,21 @@ public class AvlTree implements Iterable<Integer> {
      * @return true if the given value was found and deleted, false otherwise.
      */
     public boolean delete(int toDelete){
+        if (!AvlTreeMetrics.ENABLED) {
+            return deleteValue(toDelete);
+        }
+        long start = System.nanoTime();
+        boolean deleted = deleteValue(toDelete);
+        AvlTreeMetrics.recordDelete(System.nanoTime() - start);
+        return deleted;
+    }
+
+    /**
+     * The delete operation itself, delete only measures it when the metrics are on.
+     * @param toDelete the value to remove from the tree.
+     * @return true if the value was found and deleted, false otherwise.
+     */
+    private boolean deleteValue(int toDelete){
         //If this is empty tree - there nothing to do.
         if (this.rootNode == null) {
             return false;
@@ -326,182 +707,1505 @@ public class AvlTree implements Iterable<Integer> {
     }
 
     /**
-     * Helper function for delete, deals with the three different cases of deletion by the BST property,
-     * than checks to keep the AVL property.
-     * @param nodeToDelete the node to delete
+     * Adds all the values of a batch to the tree. The batch is sorted and applied in one pass: a small
+     * batch is inserted value by value, while a batch that is large compared to the tree is merged with the
+     * tree values and the tree is rebuilt balanced.
+     *
+     * @param values the values to add, may contain duplicates.
+     * @return the number of values that were not already in the tree and were added.
      */
-    private void remove(TreeNode nodeToDelete){
-        TreeNode parentNode = nodeToDelete.getParent();
-        // Has Two subtrees.
-        if (nodeToDelete.getRightChild() != null && nodeToDelete.getLeftChild() != null)
-        {
-            TreeNode nodeToSwitch = successor(nodeToDelete);
-            nodeToDelete.setData(nodeToSwitch.getData());
-            remove(nodeToSwitch);  //easier than dealing with pointers
+    public int addAll(int[] values) {
+        if (values == null || values.length == 0) {
+            return 0;
         }
-        else {
-            // Has one subtree.
-            if (nodeToDelete.getRightChild() != null) {
-                switchNode(parentNode, nodeToDelete, nodeToDelete.getRightChild());
-            } else if (nodeToDelete.getLeftChild() != null) {
-                switchNode(parentNode, nodeToDelete, nodeToDelete.getLeftChild());
-            }
-            // leaf
-            else {
-                switchNode(parentNode, nodeToDelete, null);
+        int[] batch = sortedUnique(values);
+        if (!rebuildIsCheaper(batch.length)) {
+            int addedValues = 0;
+            for (int value : batch) {
+                if (add(value)) {
+                    addedValues++;
+                }
             }
-            if (nodeToDelete.getParent() != null) {
-                updateTreeHeightLeafUp(parentNode);
+            return addedValues;
+        }
+        int[] treeValues = toSortedArray();
+        int[] merged = new int[treeValues.length + batch.length];
+        int treeIndex = 0, batchIndex = 0, mergedIndex = 0;
+        while (treeIndex < treeValues.length || batchIndex < batch.length) {
+            if (batchIndex == batch.length ||
+                    (treeIndex < treeValues.length && treeValues[treeIndex] < batch[batchIndex])) {
+                merged[mergedIndex++] = treeValues[treeIndex++];
+            } else if (treeIndex == treeValues.length || batch[batchIndex] < treeValues[treeIndex]) {
+                merged[mergedIndex++] = batch[batchIndex++];
+            } else {
+                // the value is already in the tree
+                merged[mergedIndex++] = treeValues[treeIndex++];
+                batchIndex++;
             }
         }
+        buildFromSorted(Arrays.copyOf(merged, mergedIndex));
+        return mergedIndex - treeValues.length;
     }
 
     /**
-     * Checks if a node is a left or right child of his parent.
-     * @param node the node to check
-     * @return the type of child the node is(left/right)
+     * Removes all the values of a batch from the tree. The batch is sorted and applied in one pass, in the
+     * same way as addAll.
+     *
+     * @param values the values to remove, may contain duplicates.
+     * @return the number of values that were found in the tree and removed.
      */
-    private kindOfChild leftOrRightSon(TreeNode node){
-        switch (node.kindOfSon()){
-            case TreeNode.RIGHT:
-                return kindOfChild.RIGHT_CHILD;
-            case TreeNode.LEFT:
-                return kindOfChild.LEFT_CHILD;
+    public int deleteAll(int[] values) {
+        if (values == null || values.length == 0 || rootNode == null) {
+            return 0;
         }
-        return kindOfChild.NO_PARENT;
+        int[] batch = sortedUnique(values);
+        if (!rebuildIsCheaper(batch.length)) {
+            int deletedValues = 0;
+            for (int value : batch) {
+                if (delete(value)) {
+                    deletedValues++;
+                }
+            }
+            return deletedValues;
+        }
+        int[] treeValues = toSortedArray();
+        int keptValues = 0, batchIndex = 0;
+        for (int value : treeValues) {
+            while (batchIndex < batch.length && batch[batchIndex] < value) {
+                batchIndex++;
+            }
+            if (batchIndex == batch.length || batch[batchIndex] != value) {
+                treeValues[keptValues++] = value;
+            }
+        }
+        buildFromSorted(Arrays.copyOf(treeValues, keptValues));
+        return treeValues.length - keptValues;
     }
 
     /**
-     *  Helper function for remove, helps manage parent/child pointers
-     * @param parent parent pointer
-     * @param oldNode old child pointer
-     * @param newNode new child pointer
+     * Compares the node visits of applying a batch value by value with the node visits of a full rebuild.
+     * @param batchSize the number of distinct values in the batch.
+     * @return true if rebuilding the tree is expected to be cheaper.
      */
-    private void switchNode(TreeNode parent,TreeNode oldNode, TreeNode newNode){
-        switch (leftOrRightSon(oldNode)){
-            case LEFT_CHILD:
-                parent.setLeftChild(newNode);
-                break;
-            case RIGHT_CHILD:
-                parent.setRightChild(newNode);
-                break;
-            case NO_PARENT:
-                rootNode = newNode;
-                if (newNode!=null) {
-                    newNode.setParent(null);
-                }
-        }
-        if (newNode != null) {
-            newNode.setParent(parent);
+    private boolean rebuildIsCheaper(int batchSize) {
+        long perValueCost = (long) batchSize * (getHeight() + 1);
+        long rebuildCost = (long) REBUILD_COST_FACTOR * ((long) numberOfNodes + batchSize);
+        return perValueCost > rebuildCost;
+    }
+
+    /**
+     * @return a new array with the values of the tree in an ascending order.
+     */
+    int[] toSortedArray() {
+        int[] sortedValues = new int[numberOfNodes];
+        int index = 0;
+        for (TreeNode currentNode = leftmostNode(rootNode); currentNode != null;
+             currentNode = nextNode(currentNode)) {
+            sortedValues[index++] = currentNode.getData();
         }
+        return sortedValues;
     }
 
     /**
-     * @return the number of nodes in the tree.
+     * Creates a new tree with the values that are in either of the given trees. The inputs are left
+     * unchanged, so both are copied first in O(n + m), the split and join work on the copies then adds
+     * O(m log(n/m + 1)) for trees of sizes m <= n. unionWith does the same without the copies. Large inputs
+     * are processed in parallel. The result uses the looser balance rule of the two trees, and keeps
+     * subtree sums if either of them does.
+     *
+     * @param first an AVL tree, may be null.
+     * @param second an AVL tree, may be null.
+     * @return a new tree with the union of the values.
      */
-    public int size(){
-        return numberOfNodes;
+    public static AvlTree union(AvlTree first, AvlTree second) {
+        int balanceDifference = looserBalanceDifference(first, second);
+        boolean summed = eitherSummed(first, second);
+        return treeOf(unionOf(copyOfRoot(first, summed), copyOfRoot(second, summed), balanceDifference),
+                balanceDifference, summed);
     }
 
     /**
-     * @return an Iterator for the Avl Tree. The returned iterator over the tree nodes
-     * in an ascending order, and NOT implement the remove() method.
+     * Creates a new tree with the values that are in both of the given trees, in the same way as union.
+     * intersectWith does the same without copying the inputs.
+     *
+     * @param first an AVL tree, may be null.
+     * @param second an AVL tree, may be null.
+     * @return a new tree with the intersection of the values.
      */
-    @Override
-    public Iterator<Integer> iterator() {
-        return new AvlTreeIterator();
+    public static AvlTree intersection(AvlTree first, AvlTree second) {
+        int balanceDifference = looserBalanceDifference(first, second);
+        boolean summed = eitherSummed(first, second);
+        return treeOf(intersectionOf(copyOfRoot(first, summed), copyOfRoot(second, summed),
+                balanceDifference), balanceDifference, summed);
     }
 
     /**
-     * Successor method of the tree, uses the BST property.
-     * @param previousNode - the node to check his successor. if null - return the node with the smallest data
-     *                     in the tree.
-     * @return iterator for the next node- if there is none throws NoSuchElementException()
+     * Creates a new tree with the values of the first tree that are not in the second tree, in the same
+     * way as union. subtract does the same without copying the inputs.
+     *
+     * @param first an AVL tree, may be null.
+     * @param second an AVL tree, may be null.
+     * @return a new tree with the difference of the values.
      */
-    private TreeNode successor(TreeNode previousNode) throws NoSuchElementException {
-        if (previousNode == null){
-            TreeNode currentNode = rootNode;
-            if(rootNode==null) { //edgecase - empty tree
-                throw new NoSuchElementException();
-            }
-            while (currentNode.getLeftChild() != null) {
-                currentNode = currentNode.getLeftChild();  //starts from min
-            }
-            return currentNode;
+    public static AvlTree difference(AvlTree first, AvlTree second) {
+        int balanceDifference = looserBalanceDifference(first, second);
+        boolean summed = eitherSummed(first, second);
+        return treeOf(differenceOf(copyOfRoot(first, summed), copyOfRoot(second, summed),
+                balanceDifference), balanceDifference, summed);
+    }
+
+    /**
+     * Adds the values of another tree to this one. The nodes of the other tree are split and joined into
+     * this tree, nothing is copied, so the work is O(m log(n/m + 1)) for trees of sizes m <= n. The other
+     * tree is left empty. Large inputs are processed in parallel. The tree takes the looser balance rule of
+     * the two, as the nodes of the other tree keep their shape. If only one of the trees keeps subtree sums,
+     * the nodes of the other tree are copied in O(m) to match this one.
+     *
+     * @param other an AVL tree, may be null or this tree.
+     */
+    public void unionWith(AvlTree other) {
+        if (other == null || other == this) {
+            return;
         }
-        if (previousNode.getRightChild() == null){  //find the node by BST property
-            TreeNode currentNode = previousNode;
-            while (currentNode != rootNode) {
-                switch (leftOrRightSon(currentNode)) {
-                    case RIGHT_CHILD:
-                        currentNode = currentNode.getParent();
-                        break;
-                    case NO_PARENT:
-                        throw new NoSuchElementException();
-                    case LEFT_CHILD:
-                        return currentNode.getParent();
-                }
-            }
-            throw new NoSuchElementException();
+        int balanceDifference = looserBalanceDifference(this, other);
+        replaceRoot(unionOf(rootNode, matchingRoot(other), balanceDifference), balanceDifference);
+        other.replaceRoot(null, other.allowedBalanceDifference);
+    }
+
+    /**
+     * Keeps only the values of this tree that are also in another tree, in the same way as unionWith. The
+     * other tree is left empty.
+     *
+     * @param other an AVL tree, may be null (which empties this tree) or this tree.
+     */
+    public void intersectWith(AvlTree other) {
+        if (other == this) {
+            return;
         }
-        TreeNode currentNode = previousNode.getRightChild();
-        while (currentNode.getLeftChild() != null){
-            currentNode = currentNode.getLeftChild();
+        int balanceDifference = looserBalanceDifference(this, other);
+        replaceRoot(intersectionOf(rootNode, other == null ? null : matchingRoot(other), balanceDifference),
+                balanceDifference);
+        if (other != null) {
+            other.replaceRoot(null, other.allowedBalanceDifference);
         }
-        return currentNode;
     }
 
     /**
-     * returns the tree height
-     * @return the height of the tree.
+     * Removes the values of another tree from this one, in the same way as unionWith. The other tree is
+     * left empty.
+     *
+     * @param other an AVL tree, may be null or this tree (which empties it).
      */
-    public int getHeight() {
-        if (rootNode == null){
-            return 0;
+    public void subtract(AvlTree other) {
+        if (other == null) {
+            return;
         }
-        return rootNode.getHeight();
+        if (other == this) {
+            replaceRoot(null, allowedBalanceDifference);
+            return;
+        }
+        int balanceDifference = looserBalanceDifference(this, other);
+        replaceRoot(differenceOf(rootNode, matchingRoot(other), balanceDifference), balanceDifference);
+        other.replaceRoot(null, other.allowedBalanceDifference);
     }
 
     /**
-     * used for testing purposes
+     * Puts the result of a set operation in place of the nodes of the tree.
+     * @param subtreeRoot the detached root of the new nodes, may be null.
+     * @param balanceDifference the balance rule the new nodes follow.
      */
-    TreeNode getRootNode() {
-        return rootNode;
+    private void replaceRoot(TreeNode subtreeRoot, int balanceDifference) {
+        rootNode = subtreeRoot;
+        numberOfNodes = subtreeRoot == null ? 0 : subtreeRoot.getSubtreeSize();
+        allowedBalanceDifference = balanceDifference;
+        modCount++;
     }
 
     /**
-     * The Iterator object of a Avl Tree.
+     * @param first an AVL tree, may be null.
+     * @param second an AVL tree, may be null.
+     * @return the larger balance difference of the two trees, the strict rule if both are null.
      */
-    private class AvlTreeIterator implements Iterator<Integer>{
-        TreeNode currentNode;
+    private static int looserBalanceDifference(AvlTree first, AvlTree second) {
+        int balanceDifference = ALLOWED_BALANCE_DIFFERENCE;
+        if (first != null) {
+            balanceDifference = Math.max(balanceDifference, first.allowedBalanceDifference);
+        }
+        if (second != null) {
+            balanceDifference = Math.max(balanceDifference, second.allowedBalanceDifference);
+        }
+        return balanceDifference;
+    }
 
-        /**
-         * Returns {@code true} if the iteration has more elements.
-         * (In other words, returns {@code true} if {@link #next} would
-         * return an element rather than throwing an exception.)
-         *
-         * @return {@code true} if the iteration has more elements
-         */
-        @Override
-        public boolean hasNext() {
-                try {
-                    successor(currentNode);
-                    return true;
-                } catch (NoSuchElementException e) {
-                    return false;
-                }
+    /**
+     * @param first an AVL tree, may be null.
+     * @param second an AVL tree, may be null.
+     * @return whether either of the trees keeps subtree sums.
+     */
+    private static boolean eitherSummed(AvlTree first, AvlTree second) {
+        return (first != null && first.subtreeSumsEnabled) || (second != null && second.subtreeSumsEnabled);
+    }
+
+    /**
+     * @param avlTree an AVL tree, may be null.
+     * @param summed whether the clones keep subtree sums.
+     * @return a detached clone of the tree nodes, null for an empty or null tree.
+     */
+    private static TreeNode copyOfRoot(AvlTree avlTree, boolean summed) {
+        return avlTree == null ? null : cloneSubtree(avlTree.rootNode, null, summed);
+    }
+
+    /**
+     * @param other another AVL tree, to be consumed by a set operation with this one.
+     * @return the root of the other tree, or a copy of it if only one of the trees keeps subtree sums.
+     */
+    private TreeNode matchingRoot(AvlTree other) {
+        return other.subtreeSumsEnabled == subtreeSumsEnabled ? other.rootNode :
+                cloneSubtree(other.rootNode, null, subtreeSumsEnabled);
+    }
+
+    /**
+     * Wraps a detached subtree in a new tree object.
+     * @param subtreeRoot the root of the subtree, may be null.
+     * @param balanceDifference the balance rule of the tree.
+     * @param summed whether the nodes of the subtree keep subtree sums.
+     * @return a tree with the given root.
+     */
+    private static AvlTree treeOf(TreeNode subtreeRoot, int balanceDifference, boolean summed) {
+        AvlTree avlTree = new AvlTree();
+        avlTree.subtreeSumsEnabled = summed;
+        avlTree.replaceRoot(subtreeRoot, balanceDifference);
+        return avlTree;
+    }
+
+    /**
+     * Union of two detached subtrees, both are consumed.
+     * @param first the root of the first subtree, may be null.
+     * @param second the root of the second subtree, may be null.
+     * @param balanceDifference the balance rule of the subtrees.
+     * @return the root of the union.
+     */
+    private static TreeNode unionOf(TreeNode first, TreeNode second, int balanceDifference) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
         }
+        boolean inParallel = isLargeOperation(first, second);
+        SplitResult secondParts = split(second, first.getData(), balanceDifference);
+        TreeNode firstLeft = detachLeftChild(first), firstRight = detachRightChild(first);
+        TreeNode[] sides = bothSides(() -> unionOf(firstLeft, secondParts.lessRoot, balanceDifference),
+                () -> unionOf(firstRight, secondParts.greaterRoot, balanceDifference), inParallel);
+        return join(sides[0], first, sides[1], balanceDifference);
+    }
 
-        /**
-         * Returns the next element in the iteration.
-         *
-         * @return the next element in the iteration
-         * @throws NoSuchElementException if the iteration has no more elements
+    /**
+     * Intersection of two detached subtrees, both are consumed.
+     * @param first the root of the first subtree, may be null.
+     * @param second the root of the second subtree, may be null.
+     * @param balanceDifference the balance rule of the subtrees.
+     * @return the root of the intersection.
+     */
+    private static TreeNode intersectionOf(TreeNode first, TreeNode second, int balanceDifference) {
+        if (first == null || second == null) {
+            return null;
+        }
+        boolean inParallel = isLargeOperation(first, second);
+        SplitResult secondParts = split(second, first.getData(), balanceDifference);
+        TreeNode firstLeft = detachLeftChild(first), firstRight = detachRightChild(first);
+        TreeNode[] sides = bothSides(() -> intersectionOf(firstLeft, secondParts.lessRoot, balanceDifference),
+                () -> intersectionOf(firstRight, secondParts.greaterRoot, balanceDifference), inParallel);
+        if (secondParts.matchNode != null) {
+            return join(sides[0], first, sides[1], balanceDifference);
+        }
+        return join(sides[0], sides[1], balanceDifference);
+    }
+
+    /**
+     * Difference of two detached subtrees, both are consumed.
+     * @param first the root of the subtree to remove values from, may be null.
+     * @param second the root of the subtree with the values to remove, may be null.
+     * @param balanceDifference the balance rule of the subtrees.
+     * @return the root of the difference.
+     */
+    private static TreeNode differenceOf(TreeNode first, TreeNode second, int balanceDifference) {
+        if (first == null || second == null) {
+            return first;
+        }
+        boolean inParallel = isLargeOperation(first, second);
+        SplitResult firstParts = split(first, second.getData(), balanceDifference);
+        TreeNode secondLeft = detachLeftChild(second), secondRight = detachRightChild(second);
+        TreeNode[] sides = bothSides(() -> differenceOf(firstParts.lessRoot, secondLeft, balanceDifference),
+                () -> differenceOf(firstParts.greaterRoot, secondRight, balanceDifference), inParallel);
+        return join(sides[0], sides[1], balanceDifference);
+    }
+
+    /**
+     * @param first the root of the first subtree.
+     * @param second the root of the second subtree.
+     * @return true if the subtrees are large enough to split the set operation between threads.
+     */
+    private static boolean isLargeOperation(TreeNode first, TreeNode second) {
+        return first.getSubtreeSize() + second.getSubtreeSize() >= PARALLEL_SET_OPERATION_THRESHOLD;
+    }
+
+    /**
+     * Runs the two independent halves of a set operation, on the common fork/join pool if asked to.
+     * @param leftSide computes the left result.
+     * @param rightSide computes the right result.
+     * @param inParallel whether to fork the left side.
+     * @return the left and right results.
+     */
+    private static TreeNode[] bothSides(Supplier<TreeNode> leftSide, Supplier<TreeNode> rightSide,
+                                        boolean inParallel) {
+        if (!inParallel) {
+            return new TreeNode[]{leftSide.get(), rightSide.get()};
+        }
+        ForkJoinTask<TreeNode> leftTask = ForkJoinTask.adapt(leftSide::get).fork();
+        TreeNode rightResult = rightSide.get();
+        return new TreeNode[]{leftTask.join(), rightResult};
+    }
+
+    /**
+     * The parts of a subtree split around a value.
+     */
+    private static class SplitResult {
+        /*The subtree of the values smaller than the split value*/
+        TreeNode lessRoot;
+
+        /*The node holding the split value, null if the value was not in the subtree*/
+        TreeNode matchNode;
+
+        /*The subtree of the values larger than the split value*/
+        TreeNode greaterRoot;
+    }
+
+    /**
+     * Splits a detached subtree around a value, the subtree is consumed. Every level joins at most one
+     * node back, so the split is O(log n).
+     * @param subtreeRoot the root of the subtree, may be null.
+     * @param value the value to split around.
+     * @param balanceDifference the balance rule of the subtree.
+     * @return the two balanced parts and the node holding the value, if any.
+     */
+    private static SplitResult split(TreeNode subtreeRoot, int value, int balanceDifference) {
+        if (subtreeRoot == null) {
+            return new SplitResult();
+        }
+        TreeNode leftRoot = detachLeftChild(subtreeRoot), rightRoot = detachRightChild(subtreeRoot);
+        SplitResult parts;
+        if (value == subtreeRoot.getData()) {
+            parts = new SplitResult();
+            parts.lessRoot = leftRoot;
+            parts.matchNode = subtreeRoot;
+            parts.greaterRoot = rightRoot;
+        } else if (value < subtreeRoot.getData()) {
+            parts = split(leftRoot, value, balanceDifference);
+            parts.greaterRoot = join(parts.greaterRoot, subtreeRoot, rightRoot, balanceDifference);
+        } else {
+            parts = split(rightRoot, value, balanceDifference);
+            parts.lessRoot = join(leftRoot, subtreeRoot, parts.lessRoot, balanceDifference);
+        }
+        return parts;
+    }
+
+    /**
+     * Joins two detached subtrees, every value of the left one smaller than every value of the right one.
+     * The smallest node of the right subtree becomes the middle node.
+     * @param leftRoot the root of the left subtree, may be null.
+     * @param rightRoot the root of the right subtree, may be null.
+     * @param balanceDifference the balance rule of the subtrees.
+     * @return the root of the joined subtree.
+     */
+    private static TreeNode join(TreeNode leftRoot, TreeNode rightRoot, int balanceDifference) {
+        if (rightRoot == null) {
+            return leftRoot;
+        }
+        AvlTree workspace = treeOf(rightRoot, balanceDifference, rightRoot instanceof SummedTreeNode);
+        TreeNode middleNode = leftmostNode(rightRoot);
+        workspace.remove(middleNode);
+        return join(leftRoot, middleNode, workspace.rootNode, balanceDifference);
+    }
+
+    /**
+     * Joins two detached subtrees with a middle node, every value of the left subtree smaller than the
+     * middle value, and every value of the right subtree larger than it. The middle node is hung on the
+     * spine of the taller subtree where the heights are within the balance rule, and the path from it up
+     * is rebalanced with the usual rotations, so the join is O(difference in heights).
+     *
+     * With a relaxed rule the heights along a spine drop by up to balanceDifference at a time, the descent
+     * stops at the first subtree within the rule of the shorter side, so the middle node starts balanced.
+     * @param leftRoot the root of the left subtree, may be null.
+     * @param middleNode a single node to put between the subtrees.
+     * @param rightRoot the root of the right subtree, may be null.
+     * @param balanceDifference the balance rule both subtrees follow.
+     * @return the root of the joined subtree.
+     */
+    private static TreeNode join(TreeNode leftRoot, TreeNode middleNode, TreeNode rightRoot,
+                                 int balanceDifference) {
+        int leftHeight = heightOf(leftRoot), rightHeight = heightOf(rightRoot);
+        middleNode.setParent(null);
+        if (Math.abs(leftHeight - rightHeight) < balanceDifference) {
+            linkChildren(middleNode, leftRoot, rightRoot);
+            return middleNode;
+        }
+        AvlTree workspace;
+        TreeNode spineNode;
+        if (leftHeight > rightHeight) {
+            workspace = treeOf(leftRoot, balanceDifference, leftRoot instanceof SummedTreeNode);
+            spineNode = leftRoot;
+            while (heightOf(spineNode.getRightChild()) >= rightHeight + balanceDifference) {
+                spineNode = spineNode.getRightChild();
+            }
+            linkChildren(middleNode, spineNode.getRightChild(), rightRoot);
+            spineNode.setRightChild(middleNode);
+        } else {
+            workspace = treeOf(rightRoot, balanceDifference, rightRoot instanceof SummedTreeNode);
+            spineNode = rightRoot;
+            while (heightOf(spineNode.getLeftChild()) >= leftHeight + balanceDifference) {
+                spineNode = spineNode.getLeftChild();
+            }
+            linkChildren(middleNode, leftRoot, spineNode.getLeftChild());
+            spineNode.setLeftChild(middleNode);
+        }
+        middleNode.setParent(spineNode);
+        // a subtree looser than the rule can still leave the middle node out of balance
+        workspace.balanceFactorCheck(middleNode);
+        workspace.updateTreeHeightLeafUp(spineNode);
+        return workspace.rootNode;
+    }
+
+    /**
+     * Sets both children of a node and fixes its height.
+     * @param parentNode the node to update.
+     * @param leftChild the new left child, may be null.
+     * @param rightChild the new right child, may be null.
+     */
+    private static void linkChildren(TreeNode parentNode, TreeNode leftChild, TreeNode rightChild) {
+        parentNode.setLeftChild(leftChild);
+        parentNode.setRightChild(rightChild);
+        if (leftChild != null) {
+            leftChild.setParent(parentNode);
+        }
+        if (rightChild != null) {
+            rightChild.setParent(parentNode);
+        }
+        parentNode.fixHeight();
+    }
+
+    /**
+     * Cuts the left subtree off a node.
+     * @param parentNode the node to update.
+     * @return the detached left subtree, may be null.
+     */
+    private static TreeNode detachLeftChild(TreeNode parentNode) {
+        TreeNode leftChild = parentNode.getLeftChild();
+        parentNode.setLeftChild(null);
+        if (leftChild != null) {
+            leftChild.setParent(null);
+        }
+        return leftChild;
+    }
+
+    /**
+     * Cuts the right subtree off a node.
+     * @param parentNode the node to update.
+     * @return the detached right subtree, may be null.
+     */
+    private static TreeNode detachRightChild(TreeNode parentNode) {
+        TreeNode rightChild = parentNode.getRightChild();
+        parentNode.setRightChild(null);
+        if (rightChild != null) {
+            rightChild.setParent(null);
+        }
+        return rightChild;
+    }
+
+    /**
+     * @param node a node, may be null.
+     * @return the height of the node, -1 if null.
+     */
+    private static int heightOf(TreeNode node) {
+        return node == null ? -1 : node.getHeight();
+    }
+
+    /**
+     * Helper function for delete, deals with the three different cases of deletion by the BST property,
+     * than checks to keep the AVL property. A node with two subtrees is replaced by its successor node,
+     * which is relinked into its place, so no data moves between nodes. The rebalancing walks up from the
+     * lowest changed node and stops once a subtree keeps its height.
+     * @param nodeToDelete the node to delete
+     */
+    private void remove(TreeNode nodeToDelete){
+        TreeNode unlinkedNode = nodeToDelete;
+        // Has Two subtrees, the successor has no left subtree and is unlinked instead.
+        if (nodeToDelete.getRightChild() != null && nodeToDelete.getLeftChild() != null) {
+            unlinkedNode = leftmostNode(nodeToDelete.getRightChild());
+        }
+        TreeNode parentNode = unlinkedNode.getParent();
+        // Has one subtree or is a leaf.
+        TreeNode childNode = unlinkedNode.getLeftChild() != null ?
+                unlinkedNode.getLeftChild() : unlinkedNode.getRightChild();
+        switchNode(parentNode, unlinkedNode, childNode);
+        TreeNode retraceFrom = parentNode;
+        if (unlinkedNode != nodeToDelete) {
+            if (retraceFrom == nodeToDelete) {
+                retraceFrom = unlinkedNode;
+            }
+            unlinkedNode.setLeftChild(nodeToDelete.getLeftChild());
+            unlinkedNode.setRightChild(nodeToDelete.getRightChild());
+            unlinkedNode.setHeight(nodeToDelete.getHeight());
+            if (unlinkedNode.getLeftChild() != null) {
+                unlinkedNode.getLeftChild().setParent(unlinkedNode);
+            }
+            if (unlinkedNode.getRightChild() != null) {
+                unlinkedNode.getRightChild().setParent(unlinkedNode);
+            }
+            switchNode(nodeToDelete.getParent(), nodeToDelete, unlinkedNode);
+        }
+        nodeToDelete.setParent(null);
+        nodeToDelete.setLeftChild(null);
+        nodeToDelete.setRightChild(null);
+        updateTreeHeightLeafUp(retraceFrom);
+        modCount++;
+        releaseNode(nodeToDelete);
+    }
+
+    /**
+     * Creates a node for an insertion, reusing a pooled node if there is one.
+     * @param value the data for the new node.
+     * @param parentNode the father of the new node, null for the root.
+     * @return a leaf node holding the value.
+     */
+    private TreeNode newNode(int value, TreeNode parentNode) {
+        if (pooledNodes == null) {
+            return createNode(value, parentNode, subtreeSumsEnabled);
+        }
+        TreeNode reusedNode = pooledNodes;
+        pooledNodes = reusedNode.getRightChild();
+        pooledNodeCount--;
+        reusedNode.reset(value, parentNode);
+        return reusedNode;
+    }
+
+    /**
+     * Keeps a removed node for reuse, if the pool has room. The node keeps its data until it is reused.
+     * @param removedNode a node that is no longer linked to the tree.
+     */
+    private void releaseNode(TreeNode removedNode) {
+        if (pooledNodeCount < nodePoolCapacity) {
+            removedNode.setRightChild(pooledNodes);
+            pooledNodes = removedNode;
+            pooledNodeCount++;
+        }
+    }
+
+    /**
+     * Sets how many removed nodes the tree keeps for reuse by later insertions. Under a steady mix of
+     * insertions and deletions a pool as large as the churn between them makes add allocate nothing. The
+     * pool is off (0) by default, lowering the capacity drops the extra pooled nodes.
+     *
+     * @param capacity the most nodes to keep, 0 to turn pooling off.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public void setNodePoolCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative node pool capacity: " + capacity);
+        }
+        nodePoolCapacity = capacity;
+        while (pooledNodeCount > capacity) {
+            pooledNodes = pooledNodes.getRightChild();
+            pooledNodeCount--;
+        }
+    }
+
+    /**
+     * @return the most removed nodes the tree keeps for reuse, 0 if pooling is off.
+     */
+    public int getNodePoolCapacity() {
+        return nodePoolCapacity;
+    }
+
+    /**
+     * Turns the subtree sums on or off. With them on, every node also keeps the sum of its subtree, which
+     * answers sum and sumInRange in O(log n) for 8 more bytes per node and an addition per node on the
+     * update paths. They are off by default, sum and sumInRange then iterate over the values. Changing the
+     * setting copies the nodes in O(n) and empties the node pool.
+     *
+     * @param enabled whether the nodes keep subtree sums.
+     */
+    public void setSubtreeSumsEnabled(boolean enabled) {
+        if (enabled == subtreeSumsEnabled) {
+            return;
+        }
+        subtreeSumsEnabled = enabled;
+        rootNode = cloneSubtree(rootNode, null, enabled);
+        pooledNodes = null;
+        pooledNodeCount = 0;
+        modCount++;
+    }
+
+    /**
+     * @return whether the nodes keep subtree sums, false unless enabled.
+     */
+    public boolean isSubtreeSumsEnabled() {
+        return subtreeSumsEnabled;
+    }
+
+    /**
+     * Checks if a node is a left or right child of his parent.
+     * @param node the node to check
+     * @return the type of child the node is(left/right)
+     */
+    private kindOfChild leftOrRightSon(TreeNode node){
+        switch (node.kindOfSon()){
+            case TreeNode.RIGHT:
+                return kindOfChild.RIGHT_CHILD;
+            case TreeNode.LEFT:
+                return kindOfChild.LEFT_CHILD;
+        }
+        return kindOfChild.NO_PARENT;
+    }
+
+    /**
+     *  Helper function for remove, helps manage parent/child pointers
+     * @param parent parent pointer
+     * @param oldNode old child pointer
+     * @param newNode new child pointer
+     */
+    private void switchNode(TreeNode parent,TreeNode oldNode, TreeNode newNode){
+        switch (leftOrRightSon(oldNode)){
+            case LEFT_CHILD:
+                parent.setLeftChild(newNode);
+                break;
+            case RIGHT_CHILD:
+                parent.setRightChild(newNode);
+                break;
+            case NO_PARENT:
+                rootNode = newNode;
+                if (newNode!=null) {
+                    newNode.setParent(null);
+                }
+        }
+        if (newNode != null) {
+            newNode.setParent(parent);
+        }
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size(){
+        return numberOfNodes;
+    }
+
+    /**
+     * @return an Iterator for the Avl Tree. The returned iterator over the tree nodes
+     * in an ascending order, and NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new AvlTreeIterator();
+    }
+
+    /**
+     * @return a primitive iterator over the values of the tree in an ascending order. The iterator does
+     * not box the values and does NOT implement the remove() method.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new AvlTreeIterator();
+    }
+
+    /**
+     * @return a sequential stream of the values of the tree in an ascending order. The stream splits at
+     * subtree boundaries with exact sizes, so it scales when made parallel.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    /**
+     * @return a spliterator over the values of the tree in an ascending order, that splits at subtree
+     * boundaries. The tree must not change while it is in use.
+     */
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return new AvlTreeSpliterator(Integer.MIN_VALUE, AvlTreeIterator.NO_UPPER_BOUND);
+    }
+
+    /**
+     * @return the smallest value in the tree.
+     * @throws NoSuchElementException if the tree is empty.
+     */
+    public int first() {
+        if (rootNode == null) {
+            throw new NoSuchElementException();
+        }
+        return leftmostNode(rootNode).getData();
+    }
+
+    /**
+     * @return the largest value in the tree.
+     * @throws NoSuchElementException if the tree is empty.
+     */
+    public int last() {
+        if (rootNode == null) {
+            throw new NoSuchElementException();
+        }
+        TreeNode currentNode = rootNode;
+        while (currentNode.getRightChild() != null) {
+            currentNode = currentNode.getRightChild();
+        }
+        return currentNode.getData();
+    }
+
+    /**
+     * Removes the smallest value from the tree. The node removed has no left subtree, so the rebalancing
+     * usually stops within a level or two of it.
+     *
+     * @return the smallest value, null if the tree is empty.
+     */
+    public Integer pollFirst() {
+        if (rootNode == null) {
+            return null;
+        }
+        TreeNode firstNode = leftmostNode(rootNode);
+        remove(firstNode);
+        numberOfNodes--;
+        return firstNode.getData();
+    }
+
+    /**
+     * Removes the largest value from the tree, the mirror of pollFirst.
+     *
+     * @return the largest value, null if the tree is empty.
+     */
+    public Integer pollLast() {
+        if (rootNode == null) {
+            return null;
+        }
+        TreeNode lastNode = rootNode;
+        while (lastNode.getRightChild() != null) {
+            lastNode = lastNode.getRightChild();
+        }
+        remove(lastNode);
+        numberOfNodes--;
+        return lastNode.getData();
+    }
+
+    /**
+     * @param value the value to compare to.
+     * @return the largest value in the tree that is smaller than or equal to the given value, null if there
+     * is none.
+     */
+    public Integer floor(int value) {
+        return dataOf(floorNode(value, true));
+    }
+
+    /**
+     * @param value the value to compare to.
+     * @return the largest value in the tree that is strictly smaller than the given value, null if there is
+     * none.
+     */
+    public Integer lower(int value) {
+        return dataOf(floorNode(value, false));
+    }
+
+    /**
+     * @param value the value to compare to.
+     * @return the smallest value in the tree that is larger than or equal to the given value, null if there
+     * is none.
+     */
+    public Integer ceiling(int value) {
+        return dataOf(ceilingNode(value, true));
+    }
+
+    /**
+     * @param value the value to compare to.
+     * @return the smallest value in the tree that is strictly larger than the given value, null if there is
+     * none.
+     */
+    public Integer higher(int value) {
+        return dataOf(ceilingNode(value, false));
+    }
+
+    /**
+     * Counts the values in the tree that are smaller than the given value, using the subtree sizes.
+     *
+     * @param value the value to compare to, does not have to be in the tree.
+     * @return the number of values smaller than the given value, which is the 0-based position of the value
+     * in ascending order if it is in the tree.
+     */
+    public int rank(int value) {
+        TreeNode currentNode = rootNode;
+        int smallerValues = 0;
+        while (currentNode != null) {
+            if (value <= currentNode.getData()) {
+                if (value == currentNode.getData()) {
+                    return smallerValues + currentNode.getLeftChildSize();
+                }
+                currentNode = currentNode.getLeftChild();
+            } else {
+                smallerValues += currentNode.getLeftChildSize() + 1;
+                currentNode = currentNode.getRightChild();
+            }
+        }
+        return smallerValues;
+    }
+
+    /**
+     * Counts the values in the range [fromInclusive, toExclusive) in O(log n), using the subtree sizes.
+     *
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return the number of values in the range, 0 if the range is empty.
+     */
+    public int countInRange(int fromInclusive, int toExclusive) {
+        return fromInclusive < toExclusive ? rank(toExclusive) - rank(fromInclusive) : 0;
+    }
+
+    /**
+     * Sums the values in the range [fromInclusive, toExclusive), in O(log n) using the subtree sums when
+     * they are enabled (see setSubtreeSumsEnabled), otherwise in O(log n + k) over the k values in range.
+     *
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return the sum of the values in the range, 0 if the range is empty.
+     */
+    public long sumInRange(int fromInclusive, int toExclusive) {
+        if (fromInclusive >= toExclusive) {
+            return 0;
+        }
+        if (subtreeSumsEnabled) {
+            return sumBelow(toExclusive) - sumBelow(fromInclusive);
+        }
+        return intStream(fromInclusive, toExclusive).asLongStream().sum();
+    }
+
+    /**
+     * @return the sum of all the values in the tree, in O(1) when the subtree sums are enabled and in O(n)
+     * otherwise.
+     */
+    public long sum() {
+        if (rootNode == null) {
+            return 0;
+        }
+        return subtreeSumsEnabled ? ((SummedTreeNode) rootNode).getSubtreeSum() :
+                intStream().asLongStream().sum();
+    }
+
+    /**
+     * Sums the values smaller than a given value, the counterpart of rank for the subtree sums.
+     * @param value the value to compare to.
+     * @return the sum of the values in the tree smaller than the value.
+     */
+    private long sumBelow(int value) {
+        SummedTreeNode currentNode = (SummedTreeNode) rootNode;
+        long smallerValuesSum = 0;
+        while (currentNode != null) {
+            if (value <= currentNode.getData()) {
+                if (value == currentNode.getData()) {
+                    return smallerValuesSum + currentNode.getLeftChildSum();
+                }
+                currentNode = (SummedTreeNode) currentNode.getLeftChild();
+            } else {
+                smallerValuesSum += currentNode.getLeftChildSum() + currentNode.getData();
+                currentNode = (SummedTreeNode) currentNode.getRightChild();
+            }
+        }
+        return smallerValuesSum;
+    }
+
+    /**
+     * Finds the value at a given position in ascending order, using the subtree sizes.
+     *
+     * @param index the 0-based position of the value.
+     * @return the index-th smallest value in the tree.
+     * @throws IndexOutOfBoundsException if index is negative or not smaller than the size of the tree.
+     */
+    public int select(int index) {
+        if (index < 0 || index >= numberOfNodes) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfNodes);
+        }
+        TreeNode currentNode = rootNode;
+        while (true) {
+            int leftSize = currentNode.getLeftChildSize();
+            if (index == leftSize) {
+                return currentNode.getData();
+            } else if (index < leftSize) {
+                currentNode = currentNode.getLeftChild();
+            } else {
+                index -= leftSize + 1;
+                currentNode = currentNode.getRightChild();
+            }
+        }
+    }
+
+    /**
+     * Makes an immutable, read optimized snapshot of the tree, which takes 4 bytes per value. Later changes
+     * to the tree do not show in the snapshot.
+     *
+     * @return a snapshot of the values of the tree.
+     * @throws IllegalStateException if the tree has more values than a snapshot can hold.
+     */
+    public FrozenAvlTree freeze() {
+        if (numberOfNodes > FrozenAvlTree.MAX_VALUES) {
+            throw new IllegalStateException("Too many values to freeze: " + numberOfNodes);
+        }
+        return new FrozenAvlTree(intIterator(), numberOfNodes);
+    }
+
+    /**
+     * Returns a cursor that remembers the node of its last operation and starts the next search from there,
+     * for workloads where consecutive values are close to each other.
+     *
+     * @return a new cursor, positioned on no node.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns a primitive iterator over the values in the range [fromInclusive, toExclusive) in an
+     * ascending order. The iterator is positioned on the first value in O(log n).
+     *
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return an iterator over the values in the range, it does NOT implement the remove() method.
+     */
+    public PrimitiveIterator.OfInt intIterator(int fromInclusive, int toExclusive) {
+        return new AvlTreeIterator(ceilingNode(fromInclusive, true), toExclusive);
+    }
+
+    /**
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return a sequential stream of the values in the range [fromInclusive, toExclusive) in an ascending
+     * order, that scales when made parallel like intStream().
+     */
+    public IntStream intStream(int fromInclusive, int toExclusive) {
+        return StreamSupport.intStream(new AvlTreeSpliterator(fromInclusive, toExclusive), false);
+    }
+
+    /**
+     * @param bound a value, up to one above the largest int.
+     * @return the number of values in the tree smaller than the bound.
+     */
+    private int countBelow(long bound) {
+        return bound > Integer.MAX_VALUE ? numberOfNodes : rank((int) bound);
+    }
+
+    /**
+     * Finds the node closest to the root among the nodes with data in a range. It is the root of the
+     * smallest subtree holding the whole range.
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return the node, null if no value of the tree is in the range.
+     */
+    private TreeNode highestNodeInRange(long fromInclusive, long toExclusive) {
+        TreeNode currentNode = rootNode;
+        while (currentNode != null &&
+                (currentNode.getData() < fromInclusive || currentNode.getData() >= toExclusive)) {
+            currentNode = currentNode.getData() < fromInclusive ?
+                    currentNode.getRightChild() : currentNode.getLeftChild();
+        }
+        return currentNode;
+    }
+
+    /**
+     * Finds the node with the largest data below (or equal to) a value.
+     * @param value the value to compare to.
+     * @param inclusive whether a node holding the value itself is a match.
+     * @return the matching node, null if there is none.
+     */
+    private TreeNode floorNode(int value, boolean inclusive) {
+        TreeNode currentNode = rootNode;
+        TreeNode bestNode = null;
+        while (currentNode != null) {
+            if (currentNode.getData() < value || (inclusive && currentNode.getData() == value)) {
+                bestNode = currentNode;
+                if (currentNode.getData() == value) {
+                    return bestNode;
+                }
+                currentNode = currentNode.getRightChild();
+            } else {
+                currentNode = currentNode.getLeftChild();
+            }
+        }
+        return bestNode;
+    }
+
+    /**
+     * Finds the node with the smallest data above (or equal to) a value.
+     * @param value the value to compare to.
+     * @param inclusive whether a node holding the value itself is a match.
+     * @return the matching node, null if there is none.
+     */
+    private TreeNode ceilingNode(int value, boolean inclusive) {
+        TreeNode currentNode = rootNode;
+        TreeNode bestNode = null;
+        while (currentNode != null) {
+            if (currentNode.getData() > value || (inclusive && currentNode.getData() == value)) {
+                bestNode = currentNode;
+                if (currentNode.getData() == value) {
+                    return bestNode;
+                }
+                currentNode = currentNode.getLeftChild();
+            } else {
+                currentNode = currentNode.getRightChild();
+            }
+        }
+        return bestNode;
+    }
+
+    /**
+     * @param node a node, may be null.
+     * @return the data of the node, null if the node is null.
+     */
+    private static Integer dataOf(TreeNode node) {
+        return node == null ? null : node.getData();
+    }
+
+    /**
+     * Finds the node with the smallest data in a subtree.
+     * @param subtreeRoot the root of the subtree, may be null.
+     * @return the leftmost node of the subtree, null if the subtree is empty.
+     */
+    private static TreeNode leftmostNode(TreeNode subtreeRoot) {
+        if (subtreeRoot != null) {
+            while (subtreeRoot.getLeftChild() != null) {
+                subtreeRoot = subtreeRoot.getLeftChild();
+            }
+        }
+        return subtreeRoot;
+    }
+
+    /**
+     * Finds the in-order successor of a node using the child and parent pointers.
+     * @param currentNode a node of the tree.
+     * @return the node with the next larger data, null if currentNode holds the largest data.
+     */
+    private static TreeNode nextNode(TreeNode currentNode) {
+        if (currentNode.getRightChild() != null) {
+            return leftmostNode(currentNode.getRightChild());
+        }
+        TreeNode parentNode = currentNode.getParent();
+        while (parentNode != null && parentNode.getRightChild() == currentNode) {
+            currentNode = parentNode;
+            parentNode = parentNode.getParent();
+        }
+        return parentNode;
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        if (rootNode == null){
+            return 0;
+        }
+        return rootNode.getHeight();
+    }
+
+    /**
+     * Relaxes (or restores) the balance rule used by add and delete. A node is rotated only once the
+     * heights of its subtrees differ by the given amount, 2 being the strict AVL rule. A relaxed tree does
+     * fewer rotations during bursts of writes, at the cost of a taller tree and longer searches, its height
+     * stays logarithmic for any fixed difference. Call rebalance() to bring the tree back to the strict
+     * height bound, changing the rule does not reshape the existing nodes.
+     *
+     * @param allowedDifference the height difference that triggers a rotation, at least 2.
+     * @throws IllegalArgumentException if allowedDifference is smaller than 2.
+     */
+    public void setAllowedBalanceDifference(int allowedDifference) {
+        if (allowedDifference < ALLOWED_BALANCE_DIFFERENCE) {
+            throw new IllegalArgumentException("allowed balance difference below " +
+                    ALLOWED_BALANCE_DIFFERENCE + ": " + allowedDifference);
+        }
+        allowedBalanceDifference = allowedDifference;
+    }
+
+    /**
+     * @return the height difference that triggers a rotation, 2 unless relaxed.
+     */
+    public int getAllowedBalanceDifference() {
+        return allowedBalanceDifference;
+    }
+
+    /**
+     * Reshapes the whole tree into a perfectly balanced one in O(n), which meets the strict AVL height
+     * bound whatever balance rule the tree was built with. The existing nodes are relinked in place, nothing
+     * is allocated besides a temporary array of the nodes, and cursors stay valid.
+     */
+    public void rebalance() {
+        TreeNode[] nodesInOrder = new TreeNode[numberOfNodes];
+        int index = 0;
+        for (TreeNode currentNode = leftmostNode(rootNode); currentNode != null;
+             currentNode = nextNode(currentNode)) {
+            nodesInOrder[index++] = currentNode;
+        }
+        rootNode = relinkBalancedSubtree(nodesInOrder, 0, numberOfNodes - 1, null);
+    }
+
+    /**
+     * Links a range of nodes in ascending order into a balanced subtree, the middle node becomes the root
+     * of the subtree, as in buildBalancedSubtree.
+     * @param nodesInOrder the nodes of the tree in ascending order.
+     * @param from the first index of the range.
+     * @param to the last index of the range (inclusive).
+     * @param parentNode the parent of the subtree root.
+     * @return the root of the relinked subtree, null if the range is empty.
+     */
+    private static TreeNode relinkBalancedSubtree(TreeNode[] nodesInOrder, int from, int to,
+                                                  TreeNode parentNode) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        TreeNode subtreeRoot = nodesInOrder[middle];
+        subtreeRoot.setParent(parentNode);
+        subtreeRoot.setLeftChild(relinkBalancedSubtree(nodesInOrder, from, middle - 1, subtreeRoot));
+        subtreeRoot.setRightChild(relinkBalancedSubtree(nodesInOrder, middle + 1, to, subtreeRoot));
+        subtreeRoot.fixHeight();
+        return subtreeRoot;
+    }
+
+    /**
+     * used for testing purposes
+     */
+    TreeNode getRootNode() {
+        return rootNode;
+    }
+
+    /**
+     * A finger into the tree. Each operation starts at the node of the previous one and climbs the parent
+     * pointers only as far as the lowest ancestor whose subtree must hold the value, then descends from it,
+     * so a search for a value d positions away costs O(log d) instead of O(log n). When the cursor is on the
+     * largest value, adding a larger value appends it right there without any search, which makes adding
+     * ascending values cheap.
+     *
+     * The heights and subtree sizes above an insertion or removal are still updated up to the root. When
+     * the tree is changed other than through the cursor, the cursor drops its node and the next operation
+     * searches from the root.
+     */
+    public class Cursor {
+        /*The node of the last operation, null if there is none*/
+        private TreeNode fingerNode;
+
+        /*Whether fingerNode holds the largest value of the tree*/
+        private boolean fingerIsLast;
+
+        /*The modCount of the tree when fingerNode was last known to be in it*/
+        private int expectedModCount;
+
+        private Cursor() {
+        }
+
+        /**
+         * Adds a value to the tree, like AvlTree.add.
+         *
+         * @param newValue the value to add.
+         * @return true if the value was not already in the tree and was added, false otherwise.
          */
+        public boolean add(int newValue) {
+            TreeNode closestNode;
+            boolean closestIsLast;
+            if (isValid() && fingerIsLast && newValue > fingerNode.getData()) {
+                // appending, the largest node has no right child
+                closestNode = fingerNode;
+                closestIsLast = true;
+            } else {
+                closestNode = locate(newValue);
+                if (closestNode == null) {
+                    AvlTree.this.add(newValue);
+                    moveTo(rootNode, true);
+                    return true;
+                }
+                closestIsLast = fingerIsLast;
+                if (closestNode.getData() == newValue) {
+                    return false;
+                }
+            }
+            TreeNode newNode = insertNewNode(closestNode, newValue);
+            numberOfNodes++;
+            moveTo(newNode, closestIsLast && newValue > closestNode.getData());
+            return true;
+        }
+
+        /**
+         * Removes a value from the tree, like AvlTree.delete. The cursor moves to the next larger value.
+         *
+         * @param toDelete the value to remove.
+         * @return true if the value was found and removed, false otherwise.
+         */
+        public boolean delete(int toDelete) {
+            TreeNode closestNode = locate(toDelete);
+            if (closestNode == null || closestNode.getData() != toDelete) {
+                return false;
+            }
+            TreeNode followingNode = nextNode(closestNode);
+            remove(closestNode);
+            numberOfNodes--;
+            moveTo(followingNode, false);
+            return true;
+        }
+
+        /**
+         * Checks whether the tree contains a value, like AvlTree.containsKey.
+         *
+         * @param searchVal the value to search for.
+         * @return true if the value is in the tree, false otherwise.
+         */
+        public boolean containsKey(int searchVal) {
+            TreeNode closestNode = locate(searchVal);
+            return closestNode != null && closestNode.getData() == searchVal;
+        }
+
+        /**
+         * @return whether fingerNode is still known to be in the tree.
+         */
+        private boolean isValid() {
+            return fingerNode != null && expectedModCount == modCount;
+        }
+
+        /**
+         * Puts the cursor on a node of the tree.
+         * @param node the node, null for none.
+         * @param isLast whether the node holds the largest value.
+         */
+        private void moveTo(TreeNode node, boolean isLast) {
+            fingerNode = node;
+            fingerIsLast = node != null && isLast;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Finds the node holding a value, or the node to hang it on, and moves the cursor there.
+         * @param value the value to search for.
+         * @return the node, null if the tree is empty.
+         */
+        private TreeNode locate(int value) {
+            if (rootNode == null) {
+                moveTo(null, false);
+                return null;
+            }
+            TreeNode startNode = isValid() ? lowestEnclosingNode(value) : rootNode;
+            boolean onRightSpine = startNode == rootNode;
+            TreeNode currentNode = startNode;
+            while (value != currentNode.getData()) {
+                TreeNode nextNode;
+                if (value < currentNode.getData()) {
+                    nextNode = currentNode.getLeftChild();
+                    onRightSpine = false;
+                } else {
+                    nextNode = currentNode.getRightChild();
+                }
+                if (nextNode == null) {
+                    break;
+                }
+                currentNode = nextNode;
+            }
+            moveTo(currentNode, onRightSpine && currentNode.getRightChild() == null);
+            return currentNode;
+        }
+
+        /**
+         * Climbs from fingerNode to the lowest node whose subtree holds every value between the data of
+         * fingerNode and the given value. Going up from a left child the parent is the smallest larger
+         * value outside the subtree, so the climb stops below the first such parent above the value (and
+         * symmetrically for smaller values).
+         * @param value the value to search for.
+         * @return the node to descend from, the matching node itself if it is passed on the way.
+         */
+        private TreeNode lowestEnclosingNode(int value) {
+            TreeNode childNode = fingerNode;
+            if (value == childNode.getData()) {
+                return childNode;
+            }
+            boolean searchRight = value > childNode.getData();
+            TreeNode parentNode = childNode.getParent();
+            while (parentNode != null) {
+                boolean fromLeft = parentNode.getLeftChild() == childNode;
+                if (fromLeft == searchRight &&
+                        (searchRight ? value <= parentNode.getData() : value >= parentNode.getData())) {
+                    return value == parentNode.getData() ? parentNode : childNode;
+                }
+                childNode = parentNode;
+                parentNode = parentNode.getParent();
+            }
+            return childNode;
+        }
+    }
+
+    /**
+     * A spliterator over the values of the tree in a range. A split cuts the range at the data of the
+     * highest node in it, so each part is a subtree of that node plus its ancestors in the range, and both
+     * parts get exact sizes from the subtree sizes. The values are walked with the parent pointers as in
+     * AvlTreeIterator.
+     */
+    private class AvlTreeSpliterator implements Spliterator.OfInt {
+        /*The values covered are in [lowerBound, upperBound)*/
+        long lowerBound;
+        final long upperBound;
+
+        /*Whether the walk has started, from then on upcomingNode is the next node to return*/
+        boolean started;
+        TreeNode upcomingNode;
+
+        /**
+         * @param lowerBound the lowest value of the range.
+         * @param upperBound the value above the range, up to one above the largest int.
+         */
+        AvlTreeSpliterator(long lowerBound, long upperBound) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        /**
+         * Positions the walk on the first value of the range, the first time a value is asked for.
+         */
+        private void start() {
+            if (!started) {
+                started = true;
+                upcomingNode = lowerBound >= upperBound ? null : ceilingNode((int) lowerBound, true);
+                if (upcomingNode != null && upcomingNode.getData() >= upperBound) {
+                    upcomingNode = null;
+                }
+            }
+        }
+
         @Override
-        public Integer next() {
-                currentNode = successor(currentNode);
-                return currentNode.getData();
+        public boolean tryAdvance(IntConsumer action) {
+            start();
+            if (upcomingNode == null) {
+                return false;
+            }
+            int data = upcomingNode.getData();
+            upcomingNode = nextNode(upcomingNode);
+            if (upcomingNode != null && upcomingNode.getData() >= upperBound) {
+                upcomingNode = null;
+            }
+            action.accept(data);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            start();
+            TreeNode currentNode = upcomingNode;
+            upcomingNode = null;
+            while (currentNode != null && currentNode.getData() < upperBound) {
+                action.accept(currentNode.getData());
+                currentNode = nextNode(currentNode);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            if (started) {
+                // the values already returned are dropped from the range
+                if (upcomingNode == null) {
+                    return null;
+                }
+                lowerBound = upcomingNode.getData();
+                started = false;
+            }
+            if (estimateSize() < 2) {
+                return null;
+            }
+            TreeNode splitNode = highestNodeInRange(lowerBound, upperBound);
+            if (countBelow(splitNode.getData()) == countBelow(lowerBound)) {
+                // the node is the first of the range, the next highest node leaves at least it to the prefix
+                splitNode = highestNodeInRange(splitNode.getData() + 1L, upperBound);
+            }
+            AvlTreeSpliterator prefix = new AvlTreeSpliterator(lowerBound, splitNode.getData());
+            lowerBound = splitNode.getData();
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (started && upcomingNode == null) {
+                return 0;
+            }
+            long from = started ? upcomingNode.getData() : lowerBound;
+            return from >= upperBound ? 0 : countBelow(upperBound) - countBelow(from);
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL |
+                    Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            // the natural order
+            return null;
+        }
+    }
+
+    /**
+     * The Iterator object of a Avl Tree. Keeps the next node to return and moves to its successor with the
+     * parent pointers, so a full scan allocates nothing besides the iterator itself.
+     */
+    private class AvlTreeIterator implements PrimitiveIterator.OfInt {
+        /*Bound for iterators that run to the end of the tree, above every int*/
+        private static final long NO_UPPER_BOUND = Integer.MAX_VALUE + 1L;
+
+        TreeNode upcomingNode;
+
+        /*The iteration stops before the first value that is not smaller than this*/
+        final long upperBound;
+
+        /**
+         * An iterator over the whole tree.
+         */
+        AvlTreeIterator() {
+            this(leftmostNode(rootNode), NO_UPPER_BOUND);
+        }
+
+        /**
+         * An iterator that starts at a given node and stops below a given value.
+         * @param startNode the first node to return, null for an empty iteration.
+         * @param upperBound the exclusive upper bound of the values.
+         */
+        AvlTreeIterator(TreeNode startNode, long upperBound) {
+            this.upperBound = upperBound;
+            upcomingNode = (startNode != null && startNode.getData() < upperBound) ? startNode : null;
+        }
+
+        /**
+         * Returns {@code true} if the iteration has more elements.
+         * (In other words, returns {@code true} if {@link #next} would
+         * return an element rather than throwing an exception.)
+         *
+         * @return {@code true} if the iteration has more elements
+         */
+        @Override
+        public boolean hasNext() {
+            return upcomingNode != null;
+        }
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the iteration
+         * @throws NoSuchElementException if the iteration has no more elements
+         */
+        @Override
+        public int nextInt() {
+            if (upcomingNode == null) {
+                throw new NoSuchElementException();
+            }
+            int data = upcomingNode.getData();
+            upcomingNode = nextNode(upcomingNode);
+            if (upcomingNode != null && upcomingNode.getData() >= upperBound) {
+                upcomingNode = null;
+            }
+            return data;
         }
 
         @Override
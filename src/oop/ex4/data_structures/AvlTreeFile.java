@@ -0,0 +1,336 @@
+package oop.ex4.data_structures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A read only AVL tree stored in a file. The file holds a header and the values in ascending order, which
+ * is an implicit balanced tree: the middle value of every range is the root of that range, exactly the
+ * tree that the AvlTree array constructor builds. The file is memory mapped, so opening it costs the same
+ * for any size and lookups and range scans read the mapped pages directly.
+ *
+ * The layout, all little endian:
+ * magic (int), format version (int), number of values (int), reserved (int), CRC32 of the values (long),
+ * then the values (int each).
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class AvlTreeFile {
+
+    /*The first four bytes of a tree file, "AVLT"*/
+    private static final int MAGIC = 0x41564C54;
+
+    /*The format version written by this class*/
+    private static final int FORMAT_VERSION = 1;
+
+    /*The size of the header in bytes*/
+    private static final int HEADER_BYTES = 24;
+
+    /*The offset of the checksum in the header*/
+    private static final int CHECKSUM_OFFSET = 16;
+
+    /*The number of values written to the file in each buffer*/
+    private static final int WRITE_BUFFER_VALUES = 1 << 14;
+
+    /*The most values a file can hold, a single mapping is limited to Integer.MAX_VALUE bytes*/
+    private static final int MAX_VALUES = (Integer.MAX_VALUE - HEADER_BYTES) / Integer.BYTES;
+
+    /*The sorted values, backed by the mapped file*/
+    private final IntBuffer values;
+
+    /*The number of values*/
+    private final int numberOfValues;
+
+    /*The checksum stored in the header*/
+    private final long storedChecksum;
+
+    /**
+     * @param values the mapped values.
+     * @param storedChecksum the checksum from the header.
+     */
+    private AvlTreeFile(IntBuffer values, long storedChecksum) {
+        this.values = values;
+        this.numberOfValues = values.limit();
+        this.storedChecksum = storedChecksum;
+    }
+
+    /**
+     * Writes the values of a tree to a file, replacing its content.
+     *
+     * @param avlTree the tree to write.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(AvlTree avlTree, Path path) throws IOException {
+        write(avlTree.intIterator(), avlTree.size(), path);
+    }
+
+    /**
+     * Writes values that come in ascending order to a file, replacing its content.
+     *
+     * @param sortedValues the values, strictly ascending.
+     * @param numberOfValues the number of values the iterator returns.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(PrimitiveIterator.OfInt sortedValues, int numberOfValues, Path path)
+            throws IOException {
+        if (numberOfValues > MAX_VALUES) {
+            throw new IOException("Too many values for a tree file: " + numberOfValues);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(numberOfValues).putInt(0).putLong(0);
+            header.flip();
+            writeFully(channel, header);
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_VALUES * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 checksum = new CRC32();
+            for (int written = 0; written < numberOfValues; written++) {
+                buffer.putInt(sortedValues.nextInt());
+                if (!buffer.hasRemaining()) {
+                    flushValues(channel, buffer, checksum);
+                }
+            }
+            flushValues(channel, buffer, checksum);
+            header.clear();
+            header.putLong(CHECKSUM_OFFSET, checksum.getValue());
+            header.position(CHECKSUM_OFFSET);
+            channel.write(header, CHECKSUM_OFFSET);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps a tree file. Only the header is read, use verifyChecksum() to check the values.
+     *
+     * @param path the file to open.
+     * @return the mapped tree.
+     * @throws IOException if the file cannot be read or is not a tree file of this version.
+     */
+    public static AvlTreeFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a tree file, too short: " + path);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tree file too large to map: " + path);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a tree file, bad magic: " + path);
+            }
+            if (mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported tree file version " + mapped.getInt(4) + ": " + path);
+            }
+            int numberOfValues = mapped.getInt(8);
+            if (numberOfValues < 0 || (long) HEADER_BYTES + (long) numberOfValues * Integer.BYTES
+                    != channel.size()) {
+                throw new IOException("Tree file size does not match its header: " + path);
+            }
+            long storedChecksum = mapped.getLong(CHECKSUM_OFFSET);
+            mapped.position(HEADER_BYTES);
+            IntBuffer values = mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            return new AvlTreeFile(values, storedChecksum);
+        }
+    }
+
+    /**
+     * Reads all the values and compares their checksum with the one in the header.
+     *
+     * @return true if the values match the checksum.
+     */
+    public boolean verifyChecksum() {
+        CRC32 checksum = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_VALUES * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int index = 0; index < numberOfValues; index++) {
+            buffer.putInt(values.get(index));
+            if (!buffer.hasRemaining() || index == numberOfValues - 1) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+        }
+        return checksum.getValue() == storedChecksum;
+    }
+
+    /**
+     * Check whether the file contains the given input value, by searching the implicit tree.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the value (0 for the root) in the balanced tree that toAvlTree() builds, -1 if
+     * it is not in the file.
+     */
+    public int contains(int searchVal) {
+        int from = 0, to = numberOfValues - 1;
+        int distanceFromRoot = 0;
+        while (from <= to) {
+            int middle = (from + to) >>> 1;
+            int middleValue = values.get(middle);
+            if (searchVal == middleValue) {
+                return distanceFromRoot;
+            } else if (searchVal < middleValue) {
+                to = middle - 1;
+            } else {
+                from = middle + 1;
+            }
+            distanceFromRoot++;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the file contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the file, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return the number of values in the file.
+     */
+    public int size() {
+        return numberOfValues;
+    }
+
+    /**
+     * @return the height of the implicit balanced tree.
+     */
+    public int getHeight() {
+        return numberOfValues == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(numberOfValues);
+    }
+
+    /**
+     * @return a primitive iterator over the values in an ascending order.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new RangeIterator(0, numberOfValues);
+    }
+
+    /**
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return a primitive iterator over the values in the range [fromInclusive, toExclusive) in an
+     * ascending order, positioned on the first value with a binary search.
+     */
+    public PrimitiveIterator.OfInt intIterator(int fromInclusive, int toExclusive) {
+        int firstIndex = lowerBound(fromInclusive);
+        int endIndex = Math.max(firstIndex, lowerBound(toExclusive));
+        return new RangeIterator(firstIndex, endIndex);
+    }
+
+    /**
+     * @return a stream of the values in an ascending order.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(Spliterators.spliterator(intIterator(), numberOfValues,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL |
+                        Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Loads the values into a mutable tree, with the linear time bulk build of AvlTree.
+     *
+     * @return a new AvlTree with the values of the file.
+     */
+    public AvlTree toAvlTree() {
+        int[] sortedValues = new int[numberOfValues];
+        values.get(0, sortedValues);
+        return AvlTree.fromSortedUnique(sortedValues);
+    }
+
+    /**
+     * @param value a value.
+     * @return the index of the first value that is not smaller than the given value.
+     */
+    private int lowerBound(int value) {
+        int from = 0, to = numberOfValues;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values.get(middle) < value) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Writes the buffered values and adds them to the checksum.
+     * @param channel the file channel.
+     * @param buffer the buffered values, cleared when done.
+     * @param checksum the running checksum.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void flushValues(FileChannel channel, ByteBuffer buffer, CRC32 checksum)
+            throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @param channel the file channel.
+     * @param buffer the bytes to write.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Iterates over a range of indexes of the mapped values.
+     */
+    private class RangeIterator implements PrimitiveIterator.OfInt {
+        /*The index of the next value*/
+        int nextIndex;
+
+        /*The index after the last value*/
+        final int endIndex;
+
+        /**
+         * @param firstIndex the index of the first value.
+         * @param endIndex the index after the last value.
+         */
+        RangeIterator(int firstIndex, int endIndex) {
+            this.nextIndex = firstIndex;
+            this.endIndex = endIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < endIndex;
+        }
+
+        @Override
+        public int nextInt() {
+            if (nextIndex >= endIndex) {
+                throw new NoSuchElementException();
+            }
+            return values.get(nextIndex++);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package oop.ex4.data_structures;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of the AVL tree data structure for object keys ordered by a Comparator, with an
+ * optional value per key. Used with add() it is an ordered set like AvlTree, used with put() and get() it
+ * is an ordered index from keys to values.
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values, Void when the tree is used as a set.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class AvlTreeMap<K, V> extends AbstractAvlTree<AvlTreeMap.Node<K, V>> implements Iterable<K> {
+
+    /*The order of the keys, null for their natural ordering*/
+    private final Comparator<? super K> comparator;
+
+    /**
+     * A node of the tree, same as TreeNode but holding a key and a value.
+     */
+    static final class Node<K, V> extends AbstractAvlTree.Node<Node<K, V>> {
+        /*the key of the node*/
+        final K key;
+
+        /*the value of the node, null in set mode*/
+        V value;
+
+        /**
+         * @param key the key of the node.
+         * @param value the value of the node.
+         */
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A tree ordered by the natural ordering of the keys, which must be Comparable.
+     */
+    public AvlTreeMap() {
+        this((Comparator<? super K>) null);
+    }
+
+    /**
+     * A tree ordered by the given comparator.
+     *
+     * @param comparator the order of the keys, null for their natural ordering.
+     */
+    public AvlTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        rootNode = null;
+        numberOfNodes = 0;
+    }
+
+    /**
+     * A tree with the keys and values of a map, ordered by the given comparator. The entries are sorted and
+     * the tree is built balanced in one pass, without rotations, as in AvlTree. Of the keys the comparator
+     * finds equal, the one the map iterates over last is kept, as put would do.
+     *
+     * @param map the keys and values to put in the tree.
+     * @param comparator the order of the keys, null for their natural ordering.
+     */
+    public AvlTreeMap(Map<? extends K, ? extends V> map, Comparator<? super K> comparator) {
+        this(comparator);
+        if (map != null) {
+            List<Map.Entry<? extends K, ? extends V>> entries = new ArrayList<>(map.entrySet());
+            entries.sort((first, second) -> compare(first.getKey(), second.getKey()));  // stable
+            int uniqueCount = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                if (uniqueCount > 0 && compare(entries.get(i).getKey(),
+                        entries.get(uniqueCount - 1).getKey()) == 0) {
+                    uniqueCount--;
+                }
+                entries.set(uniqueCount++, entries.get(i));
+            }
+            buildBalanced(uniqueCount, index -> new Node<>(entries.get(index).getKey(),
+                    entries.get(index).getValue()));
+        }
+    }
+
+    /**
+     * A copy constructor that creates a deep copy of the given AvlTreeMap with the same comparator. The new
+     * tree has the keys and values of the given tree in the same structure, the nodes are cloned one by one
+     * without any comparisons or rotations. The keys and values themselves are shared.
+     *
+     * @param avlTreeMap an AVL tree map.
+     */
+    public AvlTreeMap(AvlTreeMap<K, ? extends V> avlTreeMap) {
+        this(avlTreeMap == null ? null : avlTreeMap.comparator);
+        if (avlTreeMap != null) {
+            copyFrom(avlTreeMap, sourceNode -> new Node<>(sourceNode.key, sourceNode.value));
+        }
+    }
+
+    /**
+     * Add a key without a value to the tree.
+     *
+     * @param newKey the key to add.
+     * @return true if the key is not already in the tree and it was successfully added, false otherwise.
+     */
+    public boolean add(K newKey) {
+        int sizeBefore = numberOfNodes;
+        insert(newKey, null, false);
+        return numberOfNodes != sizeBefore;
+    }
+
+    /**
+     * Maps a key to a value, adding the key to the tree if it is not in it.
+     *
+     * @param key the key.
+     * @param value the value for the key.
+     * @return the previous value of the key, null if there was none.
+     */
+    public V put(K key, V value) {
+        return insert(key, value, true);
+    }
+
+    /**
+     * @param key the key to look up.
+     * @return the value of the key, null if the key is not in the tree or has no value.
+     */
+    public V get(K key) {
+        Node<K, V> node = rootNode == null ? null : findClosestNode(key);
+        return node != null && compare(key, node.key) == 0 ? node.value : null;
+    }
+
+    /**
+     * Adds a key to the tree, or updates its value.
+     * @param newKey the key to add.
+     * @param value the value for the key.
+     * @param replaceValue whether to replace the value of a key that is already in the tree.
+     * @return the previous value of the key, null if there was none.
+     */
+    private V insert(K newKey, V value, boolean replaceValue) {
+        if (rootNode == null) {
+            compare(newKey, newKey);  // type and null check, as in TreeMap
+            attachLeaf(null, new Node<>(newKey, value), false);
+            return null;
+        }
+        Node<K, V> closestNode = findClosestNode(newKey);
+        int comparison = compare(newKey, closestNode.key);
+        if (comparison == 0) {
+            V previousValue = closestNode.value;
+            if (replaceValue) {
+                closestNode.value = value;
+            }
+            return previousValue;
+        }
+        attachLeaf(closestNode, new Node<>(newKey, value), comparison < 0);
+        return null;
+    }
+
+    /**
+     * Remove the node with the given key from the tree, if it exists.
+     *
+     * @param toDelete the key to remove from the tree.
+     * @return true if the given key was found and deleted, false otherwise.
+     */
+    public boolean delete(K toDelete) {
+        if (rootNode == null) {
+            return false;
+        }
+        Node<K, V> closestNode = findClosestNode(toDelete);
+        if (compare(toDelete, closestNode.key) != 0) {
+            return false;
+        }
+        unlink(closestNode);
+        return true;
+    }
+
+    /**
+     * Check whether the tree contains the given key.
+     *
+     * @param searchVal the key to search for.
+     * @return the depth of the node (0 for the root) with the given key if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(K searchVal) {
+        Node<K, V> currentNode = rootNode;
+        int distanceFromRoot = 0;
+        while (currentNode != null) {
+            int comparison = compare(searchVal, currentNode.key);
+            if (comparison == 0) {
+                return distanceFromRoot;
+            }
+            currentNode = comparison < 0 ? currentNode.leftChild : currentNode.rightChild;
+            distanceFromRoot++;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the tree contains the given key, without computing its depth.
+     *
+     * @param searchVal the key to search for.
+     * @return true if the key is in the tree, false otherwise.
+     */
+    public boolean containsKey(K searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return an Iterator over the keys in an ascending order. It does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<K> iterator() {
+        AvlTreeMapIterator entries = new AvlTreeMapIterator();
+        return new Iterator<K>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return entries.nextNode().key;
+            }
+        };
+    }
+
+    /**
+     * @return an Iterator over the keys and values in an ascending order of the keys. It does NOT implement
+     * the remove() method.
+     */
+    public Iterator<Map.Entry<K, V>> entryIterator() {
+        return new AvlTreeMapIterator();
+    }
+
+    /**
+     * Compares two keys with the comparator of the tree, or by their natural ordering.
+     * @param first a key.
+     * @param second a key.
+     * @return a negative number, zero or a positive number as the first key is smaller, equal or larger.
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(K first, K second) {
+        if (comparator != null) {
+            return comparator.compare(first, second);
+        }
+        return ((Comparable<? super K>) first).compareTo(second);
+    }
+
+    /**
+     * Finds the node in the tree with the key closest to the input key, by the BST property. The tree must
+     * not be empty.
+     * @param value the key to search for.
+     * @return the matching node if the key is in the tree, otherwise the node to hang it on.
+     */
+    private Node<K, V> findClosestNode(K value) {
+        Node<K, V> currentNode = rootNode;
+        while (true) {
+            Node<K, V> nextNode;
+            int comparison = compare(value, currentNode.key);
+            if (comparison == 0) {
+                return currentNode;
+            } else if (comparison < 0) {
+                nextNode = currentNode.leftChild;
+            } else {
+                nextNode = currentNode.rightChild;
+            }
+            if (nextNode == null) {
+                return currentNode;
+            }
+            currentNode = nextNode;
+        }
+    }
+
+    /**
+     * The Iterator object of an AvlTreeMap. Walks the tree in order using the parent pointers.
+     */
+    private class AvlTreeMapIterator implements Iterator<Map.Entry<K, V>> {
+        Node<K, V> upcomingNode;
+
+        /**
+         * Starts the iterator at the smallest key.
+         */
+        AvlTreeMapIterator() {
+            upcomingNode = firstNode();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return upcomingNode != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            Node<K, V> currentNode = nextNode();
+            return new AbstractMap.SimpleImmutableEntry<>(currentNode.key, currentNode.value);
+        }
+
+        /**
+         * Moves to the next node.
+         * @return the node to return.
+         */
+        Node<K, V> nextNode() {
+            if (upcomingNode == null) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> currentNode = upcomingNode;
+            upcomingNode = AbstractAvlTree.nextNode(currentNode);
+            return currentNode;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package oop.ex4.data_structures;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation metrics of all the AvlTree instances: single and double rotations, the nodes visited by the
+ * searches and by the rebalancing walks up the tree, and latency histograms of add and delete.
+ *
+ * The metrics are off unless the JVM is started with -Doop.ex4.avl.metrics=true. The flag is a static
+ * final constant, so when it is off the JIT removes the instrumentation from the tree code altogether.
+ * When it is on, the metrics are read with snapshot() or over JMX.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public final class AvlTreeMetrics implements AvlTreeMetricsMXBean {
+
+    /*Whether the trees record metrics, fixed at class loading*/
+    public static final boolean ENABLED = Boolean.getBoolean("oop.ex4.avl.metrics");
+
+    /*The name of the registered MXBean*/
+    public static final String OBJECT_NAME = "oop.ex4.data_structures:type=AvlTreeMetrics";
+
+    /*The only instance*/
+    private static final AvlTreeMetrics INSTANCE = new AvlTreeMetrics();
+
+    /*Counters, LongAdder keeps trees on different threads from contending*/
+    private final LongAdder singleRotations = new LongAdder();
+    private final LongAdder doubleRotations = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNodesVisited = new LongAdder();
+    private final LongAdder retraces = new LongAdder();
+    private final LongAdder retraceNodesVisited = new LongAdder();
+
+    /*Latencies of the public operations*/
+    private final LatencyHistogram addLatency = new LatencyHistogram();
+    private final LatencyHistogram deleteLatency = new LatencyHistogram();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                        new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // the metrics stay available through snapshot()
+            }
+        }
+    }
+
+    private AvlTreeMetrics() {
+    }
+
+    /**
+     * @return the metrics, to read them or reset them.
+     */
+    public static AvlTreeMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a copy of the metrics as they are now.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(INSTANCE);
+    }
+
+    /**
+     * Records a rebalancing by balanceFactorCheck.
+     * @param isDouble true for a double rotation (LR or RL), false for a single one.
+     */
+    static void recordRotation(boolean isDouble) {
+        (isDouble ? INSTANCE.doubleRotations : INSTANCE.singleRotations).increment();
+    }
+
+    /**
+     * Records a search down the tree.
+     * @param nodesVisited the number of nodes the search went through.
+     */
+    static void recordSearch(int nodesVisited) {
+        INSTANCE.searches.increment();
+        INSTANCE.searchNodesVisited.add(nodesVisited);
+    }
+
+    /**
+     * Records a walk up the tree updating heights and rebalancing.
+     * @param nodesVisited the number of nodes whose height was updated.
+     */
+    static void recordRetrace(int nodesVisited) {
+        INSTANCE.retraces.increment();
+        INSTANCE.retraceNodesVisited.add(nodesVisited);
+    }
+
+    /**
+     * @param nanos the latency of an add.
+     */
+    static void recordAdd(long nanos) {
+        INSTANCE.addLatency.record(nanos);
+    }
+
+    /**
+     * @param nanos the latency of a delete.
+     */
+    static void recordDelete(long nanos) {
+        INSTANCE.deleteLatency.record(nanos);
+    }
+
+    @Override
+    public long getSingleRotations() {
+        return singleRotations.sum();
+    }
+
+    @Override
+    public long getDoubleRotations() {
+        return doubleRotations.sum();
+    }
+
+    @Override
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    @Override
+    public long getSearchNodesVisited() {
+        return searchNodesVisited.sum();
+    }
+
+    @Override
+    public long getRetraces() {
+        return retraces.sum();
+    }
+
+    @Override
+    public long getRetraceNodesVisited() {
+        return retraceNodesVisited.sum();
+    }
+
+    @Override
+    public long getAddCount() {
+        return addLatency.getCount();
+    }
+
+    @Override
+    public long getAddLatencyP50() {
+        return addLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getAddLatencyP99() {
+        return addLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getAddLatencyP999() {
+        return addLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getAddLatencyMax() {
+        return addLatency.getMax();
+    }
+
+    @Override
+    public long getDeleteCount() {
+        return deleteLatency.getCount();
+    }
+
+    @Override
+    public long getDeleteLatencyP50() {
+        return deleteLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getDeleteLatencyP99() {
+        return deleteLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getDeleteLatencyP999() {
+        return deleteLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDeleteLatencyMax() {
+        return deleteLatency.getMax();
+    }
+
+    @Override
+    public void reset() {
+        singleRotations.reset();
+        doubleRotations.reset();
+        searches.reset();
+        searchNodesVisited.reset();
+        retraces.reset();
+        retraceNodesVisited.reset();
+        addLatency.reset();
+        deleteLatency.reset();
+    }
+
+    /**
+     * The metrics at one point in time.
+     */
+    public static final class Snapshot {
+        private final long singleRotations, doubleRotations, searches, searchNodesVisited, retraces,
+                retraceNodesVisited;
+        private final LatencyHistogram addLatency, deleteLatency;
+
+        private Snapshot(AvlTreeMetrics metrics) {
+            singleRotations = metrics.getSingleRotations();
+            doubleRotations = metrics.getDoubleRotations();
+            searches = metrics.getSearches();
+            searchNodesVisited = metrics.getSearchNodesVisited();
+            retraces = metrics.getRetraces();
+            retraceNodesVisited = metrics.getRetraceNodesVisited();
+            addLatency = metrics.addLatency.copy();
+            deleteLatency = metrics.deleteLatency.copy();
+        }
+
+        /**
+         * @return the single rotations, see AvlTreeMetricsMXBean.getSingleRotations().
+         */
+        public long getSingleRotations() {
+            return singleRotations;
+        }
+
+        /**
+         * @return the double rotations, each one counted once, see AvlTreeMetricsMXBean.getDoubleRotations().
+         */
+        public long getDoubleRotations() {
+            return doubleRotations;
+        }
+
+        /**
+         * @return the searches of add and delete, see AvlTreeMetricsMXBean.getSearches().
+         */
+        public long getSearches() {
+            return searches;
+        }
+
+        /**
+         * @return the nodes the searches went through, see AvlTreeMetricsMXBean.getSearchNodesVisited().
+         */
+        public long getSearchNodesVisited() {
+            return searchNodesVisited;
+        }
+
+        /**
+         * @return the rebalancing walks up the tree, see AvlTreeMetricsMXBean.getRetraces().
+         */
+        public long getRetraces() {
+            return retraces;
+        }
+
+        /**
+         * @return the nodes whose height the walks recomputed, see
+         * AvlTreeMetricsMXBean.getRetraceNodesVisited().
+         */
+        public long getRetraceNodesVisited() {
+            return retraceNodesVisited;
+        }
+
+        /**
+         * @return the latencies of add in nanoseconds, the histogram does not change anymore.
+         */
+        public LatencyHistogram getAddLatency() {
+            return addLatency;
+        }
+
+        /**
+         * @return the latencies of delete in nanoseconds, the histogram does not change anymore.
+         */
+        public LatencyHistogram getDeleteLatency() {
+            return deleteLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "rotations: " + singleRotations + " single, " + doubleRotations + " double; " +
+                    "searches: " + searches + " visiting " + searchNodesVisited + " nodes; " +
+                    "retraces: " + retraces + " visiting " + retraceNodesVisited + " nodes; " +
+                    "add: " + addLatency + "; delete: " + deleteLatency;
+        }
+    }
+
+    /**
+     * A histogram of latencies in the manner of HdrHistogram: every power of two is split into
+     * SUB_BUCKETS / 2 linear buckets, so any recorded value is reported within about 3% of its real value,
+     * over the whole range of long and with a fixed, small footprint.
+     */
+    public static final class LatencyHistogram {
+
+        /*log2 of the number of exact buckets at the bottom of the range*/
+        private static final int SUB_BUCKET_BITS = 6;
+
+        /*The values below this have a bucket of their own*/
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /*The number of buckets for every power of two above SUB_BUCKETS*/
+        private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+        /*Enough buckets for Long.MAX_VALUE*/
+        private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+        /*The number of values recorded in each bucket*/
+        private final AtomicLongArray counts;
+
+        /*The largest value recorded*/
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /*The sum of all values recorded*/
+        private final LongAdder total = new LongAdder();
+
+        private LatencyHistogram() {
+            counts = new AtomicLongArray(BUCKETS);
+        }
+
+        /**
+         * @param value a value to record, negative values count as 0.
+         */
+        void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucketOf(value));
+            max.accumulate(value);
+            total.add(value);
+        }
+
+        /**
+         * @return the number of recorded values.
+         */
+        public long getCount() {
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                count += counts.get(bucket);
+            }
+            return count;
+        }
+
+        /**
+         * @return the largest recorded value, 0 if nothing was recorded.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return the mean of the recorded values, 0 if nothing was recorded.
+         */
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) total.sum() / count;
+        }
+
+        /**
+         * @param percentile a percentile between 0 and 100.
+         * @return the smallest value that at least the given percentile of the recorded values are at or
+         * below, rounded up to the end of its bucket. 0 if nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long wanted = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= wanted) {
+                    return Math.min(highestValueOf(bucket), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * @return a copy of the histogram.
+         */
+        LatencyHistogram copy() {
+            LatencyHistogram copy = new LatencyHistogram();
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                copy.counts.set(bucket, counts.get(bucket));
+            }
+            copy.max.accumulate(max.get());
+            copy.total.add(total.sum());
+            return copy;
+        }
+
+        /**
+         * Zeroes the histogram.
+         */
+        void reset() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts.set(bucket, 0);
+            }
+            max.reset();
+            total.reset();
+        }
+
+        /**
+         * @param value a non negative value.
+         * @return the bucket of the value.
+         */
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            // the top SUB_BUCKET_BITS bits of the value pick the bucket within its power of two
+            int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+        }
+
+        /**
+         * @param bucket a bucket.
+         * @return the largest value that falls in the bucket.
+         */
+        private static long highestValueOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+            long mantissa = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+            return ((mantissa + 1) << shift) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %.1f, p50 %d, p99 %d, p99.9 %d, max %d", getCount(),
+                    getMean(), valueAtPercentile(50), valueAtPercentile(99), valueAtPercentile(99.9),
+                    getMax());
+        }
+    }
+}
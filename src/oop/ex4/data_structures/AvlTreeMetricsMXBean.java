@@ -0,0 +1,110 @@
+package oop.ex4.data_structures;
+
+/**
+ * The management interface of the AvlTree operation metrics, registered as
+ * oop.ex4.data_structures:type=AvlTreeMetrics when the metrics are enabled. The counters add up all the
+ * AvlTree instances since the start or the last reset. Latencies are in nanoseconds, measured with
+ * System.nanoTime() around the whole operation.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public interface AvlTreeMetricsMXBean {
+
+    /**
+     * @return the single rotations (LL and RR cases) made by the rebalancing of AvlTree.add, delete and the
+     * joins of the set operations.
+     */
+    long getSingleRotations();
+
+    /**
+     * @return the double rotations (LR and RL cases), each one counted once although it is two rotations.
+     */
+    long getDoubleRotations();
+
+    /**
+     * @return the searches down the tree made by AvlTree.add and delete to find their value or its place.
+     * contains and the cursors do not count.
+     */
+    long getSearches();
+
+    /**
+     * @return the nodes the counted searches went through, the root and the last node included. Divided by
+     * getSearches() it is the mean search depth plus one.
+     */
+    long getSearchNodesVisited();
+
+    /**
+     * @return the walks up the tree after an insertion, a removal or a join, which update the heights and
+     * rebalance.
+     */
+    long getRetraces();
+
+    /**
+     * @return the nodes whose height the counted walks recomputed. The walk stops once a height does not
+     * change, the subtree sizes updated above that point do not count.
+     */
+    long getRetraceNodesVisited();
+
+    /**
+     * @return the calls to AvlTree.add, including those addAll makes for a small batch and those that found
+     * the value already in the tree.
+     */
+    long getAddCount();
+
+    /**
+     * @return the median latency of AvlTree.add in nanoseconds, within about 3% (rounded up to the end of
+     * its histogram bucket), 0 if there was no add.
+     */
+    long getAddLatencyP50();
+
+    /**
+     * @return the 99th percentile of the latency of AvlTree.add in nanoseconds, with the accuracy of
+     * getAddLatencyP50().
+     */
+    long getAddLatencyP99();
+
+    /**
+     * @return the 99.9th percentile of the latency of AvlTree.add in nanoseconds, with the accuracy of
+     * getAddLatencyP50().
+     */
+    long getAddLatencyP999();
+
+    /**
+     * @return the longest AvlTree.add in nanoseconds, exact, 0 if there was no add.
+     */
+    long getAddLatencyMax();
+
+    /**
+     * @return the calls to AvlTree.delete, including those deleteAll makes for a small batch and those that
+     * did not find the value.
+     */
+    long getDeleteCount();
+
+    /**
+     * @return the median latency of AvlTree.delete in nanoseconds, within about 3% (rounded up to the end
+     * of its histogram bucket), 0 if there was no delete.
+     */
+    long getDeleteLatencyP50();
+
+    /**
+     * @return the 99th percentile of the latency of AvlTree.delete in nanoseconds, with the accuracy of
+     * getDeleteLatencyP50().
+     */
+    long getDeleteLatencyP99();
+
+    /**
+     * @return the 99.9th percentile of the latency of AvlTree.delete in nanoseconds, with the accuracy of
+     * getDeleteLatencyP50().
+     */
+    long getDeleteLatencyP999();
+
+    /**
+     * @return the longest AvlTree.delete in nanoseconds, exact, 0 if there was no delete.
+     */
+    long getDeleteLatencyMax();
+
+    /**
+     * Zeroes all the counters and histograms.
+     */
+    void reset();
+}
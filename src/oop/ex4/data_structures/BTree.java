@@ -0,0 +1,507 @@
+package oop.ex4.data_structures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A B-tree of int values with the API of AvlTree. Every node holds up to 2*T-1 sorted values in one array,
+ * so a lookup touches about log_T(n) nodes instead of the ~1.44*log2(n) nodes of an AVL tree, and most of
+ * its comparisons run over contiguous memory.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class BTree implements Iterable<Integer> {
+
+    /*The minimum degree of the tree: every node but the root has between T-1 and 2*T-1 values*/
+    private static final int T = 32;
+
+    /*The most values a node can hold*/
+    private static final int MAX_VALUES = 2 * T - 1;
+
+    /*The number of values in the tree*/
+    private int numberOfValues;
+
+    /*The root node, never null*/
+    private Node rootNode;
+
+    /**
+     * A node of the B-tree. The children of an inner node are one more than its values.
+     */
+    private static class Node {
+        /*The values of the node in ascending order, only the first valueCount are in use*/
+        final int[] values = new int[MAX_VALUES];
+
+        /*The children, null for a leaf*/
+        final Node[] children;
+
+        /*Number of values in use*/
+        int valueCount;
+
+        /**
+         * @param leaf whether the node is a leaf.
+         */
+        Node(boolean leaf) {
+            children = leaf ? null : new Node[MAX_VALUES + 1];
+        }
+
+        /**
+         * @return true if the node has no children.
+         */
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        /**
+         * Finds the position of a value in the node.
+         * @param value the value to search for.
+         * @return the index of the value if it is in the node, otherwise (-(insertion point) - 1) as in
+         * Arrays.binarySearch.
+         */
+        int search(int value) {
+            return Arrays.binarySearch(values, 0, valueCount, value);
+        }
+    }
+
+    /**
+     * The default constructor.
+     */
+    public BTree() {
+        rootNode = new Node(true);
+        numberOfValues = 0;
+    }
+
+    /**
+     * A constructor that builds a new tree containing all unique values in an input array. The values are
+     * sorted and the tree is loaded bottom up in linear time after sorting.
+     *
+     * @param data the values to add to tree.
+     */
+    public BTree(int[] data) {
+        this();
+        if (data != null && data.length > 0) {
+            buildFromSorted(AvlTree.sortedUnique(data));
+        }
+    }
+
+    /**
+     * Replaces the content of the tree with the given values. The leaves are filled from left to right with
+     * one value kept aside between every two of them, then the values kept aside are loaded the same way
+     * into the level above, until a level has a single node, which becomes the root. The values of a level
+     * are spread evenly over as few nodes as can hold them, so every node but the root holds at least T-1
+     * values and all the leaves are at the same depth.
+     * @param sortedValues values in strictly ascending order, at least one.
+     */
+    private void buildFromSorted(int[] sortedValues) {
+        int[] levelValues = sortedValues;
+        Node[] lowerLevel = null;
+        while (true) {
+            // every node takes its values and the separator after it, the last node has no separator
+            int slots = levelValues.length + 1;
+            int nodeCount = (slots + MAX_VALUES) / (MAX_VALUES + 1);
+            Node[] level = new Node[nodeCount];
+            int[] separators = new int[nodeCount - 1];
+            int position = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                int valueCount = slots / nodeCount - 1 + (i < slots % nodeCount ? 1 : 0);
+                Node node = new Node(lowerLevel == null);
+                System.arraycopy(levelValues, position, node.values, 0, valueCount);
+                if (lowerLevel != null) {
+                    System.arraycopy(lowerLevel, position, node.children, 0, valueCount + 1);
+                }
+                node.valueCount = valueCount;
+                position += valueCount;
+                if (i < nodeCount - 1) {
+                    separators[i] = levelValues[position++];
+                }
+                level[i] = node;
+            }
+            if (nodeCount == 1) {
+                rootNode = level[0];
+                numberOfValues = sortedValues.length;
+                return;
+            }
+            levelValues = separators;
+            lowerLevel = level;
+        }
+    }
+
+    /**
+     * Add a new value to the tree. Full nodes are split on the way down, so the insertion never has to
+     * go back up.
+     *
+     * @param newValue the value to add.
+     * @return true if the value to add is not already in the tree and it was successfully added,
+     * false otherwise.
+     */
+    public boolean add(int newValue) {
+        if (rootNode.valueCount == MAX_VALUES) {
+            if (rootNode.search(newValue) >= 0) {
+                return false;
+            }
+            Node newRoot = new Node(false);
+            newRoot.children[0] = rootNode;
+            splitChild(newRoot, 0);
+            rootNode = newRoot;
+        }
+        Node currentNode = rootNode;
+        while (true) {
+            int position = currentNode.search(newValue);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (currentNode.isLeaf()) {
+                System.arraycopy(currentNode.values, position, currentNode.values, position + 1,
+                        currentNode.valueCount - position);
+                currentNode.values[position] = newValue;
+                currentNode.valueCount++;
+                numberOfValues++;
+                return true;
+            }
+            if (currentNode.children[position].valueCount == MAX_VALUES) {
+                if (currentNode.children[position].search(newValue) >= 0) {
+                    return false;
+                }
+                splitChild(currentNode, position);
+                if (newValue > currentNode.values[position]) {
+                    position++;
+                }
+            }
+            currentNode = currentNode.children[position];
+        }
+    }
+
+    /**
+     * Remove a value from the tree, if it exists. Nodes on the way down are filled to at least T values
+     * first, by borrowing from a sibling or merging with it, so the removal never has to go back up.
+     *
+     * @param toDelete the value to remove from the tree.
+     * @return true if the given value was found and deleted, false otherwise.
+     */
+    public boolean delete(int toDelete) {
+        boolean deleted = delete(rootNode, toDelete);
+        if (rootNode.valueCount == 0 && !rootNode.isLeaf()) {
+            rootNode = rootNode.children[0];
+        }
+        if (deleted) {
+            numberOfValues--;
+        }
+        return deleted;
+    }
+
+    /**
+     * Check whether the tree contains the given input value.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) that holds the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        Node currentNode = rootNode;
+        int depth = 0;
+        while (true) {
+            int position = currentNode.search(searchVal);
+            if (position >= 0) {
+                return depth;
+            }
+            if (currentNode.isLeaf()) {
+                return -1;
+            }
+            currentNode = currentNode.children[-position - 1];
+            depth++;
+        }
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return the number of values in the tree.
+     */
+    public int size() {
+        return numberOfValues;
+    }
+
+    /**
+     * returns the tree height, all the leaves of a B-tree are at the same depth
+     * @return the depth of the leaves.
+     */
+    public int getHeight() {
+        int height = 0;
+        for (Node currentNode = rootNode; !currentNode.isLeaf(); currentNode = currentNode.children[0]) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * @return an Iterator for the tree. The returned iterator goes over the values in an ascending order,
+     * and does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new BTreeIterator();
+    }
+
+    /**
+     * @return a primitive iterator over the values of the tree in an ascending order.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new BTreeIterator();
+    }
+
+    /**
+     * Splits a full child around its middle value, which moves up into the parent.
+     * @param parentNode a node that is not full.
+     * @param childIndex the index of the full child.
+     */
+    private static void splitChild(Node parentNode, int childIndex) {
+        Node fullChild = parentNode.children[childIndex];
+        Node newSibling = new Node(fullChild.isLeaf());
+        System.arraycopy(fullChild.values, T, newSibling.values, 0, T - 1);
+        if (!fullChild.isLeaf()) {
+            System.arraycopy(fullChild.children, T, newSibling.children, 0, T);
+            Arrays.fill(fullChild.children, T, MAX_VALUES + 1, null);
+        }
+        newSibling.valueCount = T - 1;
+        fullChild.valueCount = T - 1;
+        System.arraycopy(parentNode.children, childIndex + 1, parentNode.children, childIndex + 2,
+                parentNode.valueCount - childIndex);
+        parentNode.children[childIndex + 1] = newSibling;
+        System.arraycopy(parentNode.values, childIndex, parentNode.values, childIndex + 1,
+                parentNode.valueCount - childIndex);
+        parentNode.values[childIndex] = fullChild.values[T - 1];
+        parentNode.valueCount++;
+    }
+
+    /**
+     * Removes a value from a subtree whose root has at least T values (or is the root of the tree).
+     * @param currentNode the root of the subtree.
+     * @param toDelete the value to remove.
+     * @return true if the value was found and removed.
+     */
+    private static boolean delete(Node currentNode, int toDelete) {
+        while (true) {
+            int position = currentNode.search(toDelete);
+            if (position >= 0) {
+                if (currentNode.isLeaf()) {
+                    removeValue(currentNode, position);
+                    return true;
+                }
+                Node leftChild = currentNode.children[position];
+                Node rightChild = currentNode.children[position + 1];
+                if (leftChild.valueCount >= T) {
+                    int predecessor = largestValue(leftChild);
+                    currentNode.values[position] = predecessor;
+                    toDelete = predecessor;
+                    currentNode = leftChild;
+                } else if (rightChild.valueCount >= T) {
+                    int successor = smallestValue(rightChild);
+                    currentNode.values[position] = successor;
+                    toDelete = successor;
+                    currentNode = rightChild;
+                } else {
+                    mergeChildren(currentNode, position);
+                    currentNode = leftChild;
+                }
+                continue;
+            }
+            if (currentNode.isLeaf()) {
+                return false;
+            }
+            position = -position - 1;
+            if (currentNode.children[position].valueCount < T) {
+                position = fillChild(currentNode, position);
+            }
+            currentNode = currentNode.children[position];
+        }
+    }
+
+    /**
+     * Gives a child with T-1 values another value, from a sibling that can spare one or by merging it with
+     * a sibling.
+     * @param parentNode the parent of the child.
+     * @param childIndex the index of the child.
+     * @return the index of the child to continue to, which moves one place left after a merge with the
+     * left sibling.
+     */
+    private static int fillChild(Node parentNode, int childIndex) {
+        Node child = parentNode.children[childIndex];
+        if (childIndex > 0 && parentNode.children[childIndex - 1].valueCount >= T) {
+            // borrow from the left sibling through the parent
+            Node leftSibling = parentNode.children[childIndex - 1];
+            System.arraycopy(child.values, 0, child.values, 1, child.valueCount);
+            child.values[0] = parentNode.values[childIndex - 1];
+            parentNode.values[childIndex - 1] = leftSibling.values[leftSibling.valueCount - 1];
+            if (!child.isLeaf()) {
+                System.arraycopy(child.children, 0, child.children, 1, child.valueCount + 1);
+                child.children[0] = leftSibling.children[leftSibling.valueCount];
+                leftSibling.children[leftSibling.valueCount] = null;
+            }
+            child.valueCount++;
+            leftSibling.valueCount--;
+            return childIndex;
+        }
+        if (childIndex < parentNode.valueCount && parentNode.children[childIndex + 1].valueCount >= T) {
+            // borrow from the right sibling through the parent
+            Node rightSibling = parentNode.children[childIndex + 1];
+            child.values[child.valueCount] = parentNode.values[childIndex];
+            parentNode.values[childIndex] = rightSibling.values[0];
+            if (!child.isLeaf()) {
+                child.children[child.valueCount + 1] = rightSibling.children[0];
+                System.arraycopy(rightSibling.children, 1, rightSibling.children, 0, rightSibling.valueCount);
+                rightSibling.children[rightSibling.valueCount] = null;
+            }
+            System.arraycopy(rightSibling.values, 1, rightSibling.values, 0, rightSibling.valueCount - 1);
+            child.valueCount++;
+            rightSibling.valueCount--;
+            return childIndex;
+        }
+        if (childIndex < parentNode.valueCount) {
+            mergeChildren(parentNode, childIndex);
+            return childIndex;
+        }
+        mergeChildren(parentNode, childIndex - 1);
+        return childIndex - 1;
+    }
+
+    /**
+     * Merges two children with T-1 values each and the parent value between them into the left child.
+     * @param parentNode the parent of the children.
+     * @param valueIndex the index of the parent value between the children.
+     */
+    private static void mergeChildren(Node parentNode, int valueIndex) {
+        Node leftChild = parentNode.children[valueIndex];
+        Node rightChild = parentNode.children[valueIndex + 1];
+        leftChild.values[leftChild.valueCount] = parentNode.values[valueIndex];
+        System.arraycopy(rightChild.values, 0, leftChild.values, leftChild.valueCount + 1,
+                rightChild.valueCount);
+        if (!leftChild.isLeaf()) {
+            System.arraycopy(rightChild.children, 0, leftChild.children, leftChild.valueCount + 1,
+                    rightChild.valueCount + 1);
+        }
+        leftChild.valueCount += rightChild.valueCount + 1;
+        removeValue(parentNode, valueIndex);
+        if (!parentNode.isLeaf()) {
+            System.arraycopy(parentNode.children, valueIndex + 2, parentNode.children, valueIndex + 1,
+                    parentNode.valueCount - valueIndex);
+            parentNode.children[parentNode.valueCount + 1] = null;
+        }
+    }
+
+    /**
+     * Removes a value from a node, without touching its children.
+     * @param node the node to update.
+     * @param valueIndex the index of the value to remove.
+     */
+    private static void removeValue(Node node, int valueIndex) {
+        System.arraycopy(node.values, valueIndex + 1, node.values, valueIndex,
+                node.valueCount - valueIndex - 1);
+        node.valueCount--;
+    }
+
+    /**
+     * @param subtreeRoot the root of a subtree.
+     * @return the largest value of the subtree.
+     */
+    private static int largestValue(Node subtreeRoot) {
+        while (!subtreeRoot.isLeaf()) {
+            subtreeRoot = subtreeRoot.children[subtreeRoot.valueCount];
+        }
+        return subtreeRoot.values[subtreeRoot.valueCount - 1];
+    }
+
+    /**
+     * @param subtreeRoot the root of a subtree.
+     * @return the smallest value of the subtree.
+     */
+    private static int smallestValue(Node subtreeRoot) {
+        while (!subtreeRoot.isLeaf()) {
+            subtreeRoot = subtreeRoot.children[0];
+        }
+        return subtreeRoot.values[0];
+    }
+
+    /**
+     * The Iterator object of a B-tree. Keeps the path to the next value on an explicit stack of nodes and
+     * positions within them.
+     */
+    private class BTreeIterator implements PrimitiveIterator.OfInt {
+        /*The nodes on the path to the next value*/
+        final Node[] pathNodes = new Node[getHeight() + 1];
+
+        /*The index of the next value in each node of the path*/
+        final int[] pathPositions = new int[pathNodes.length];
+
+        /*Number of nodes on the path*/
+        int pathLength = 0;
+
+        /**
+         * Starts the iterator at the smallest value.
+         */
+        BTreeIterator() {
+            pushLeftmostPath(rootNode);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pathLength > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (pathLength == 0) {
+                throw new NoSuchElementException();
+            }
+            Node currentNode = pathNodes[pathLength - 1];
+            int position = pathPositions[pathLength - 1]++;
+            int value = currentNode.values[position];
+            if (!currentNode.isLeaf()) {
+                pushLeftmostPath(currentNode.children[position + 1]);
+            } else {
+                popFinishedNodes();
+            }
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Pushes the path from a node down to its smallest value.
+         * @param currentNode the top of the path.
+         */
+        private void pushLeftmostPath(Node currentNode) {
+            while (true) {
+                pathNodes[pathLength] = currentNode;
+                pathPositions[pathLength] = 0;
+                pathLength++;
+                if (currentNode.isLeaf()) {
+                    break;
+                }
+                currentNode = currentNode.children[0];
+            }
+            popFinishedNodes();
+        }
+
+        /**
+         * Pops the nodes at the top of the path that have no values left to return.
+         */
+        private void popFinishedNodes() {
+            while (pathLength > 0 && pathPositions[pathLength - 1] == pathNodes[pathLength - 1].valueCount) {
+                pathLength--;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package oop.ex4.data_structures;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * A thread safe AVL tree with the API of AvlTree. The values are kept as versions of a PersistentAvlTree:
+ * writers are serialized and publish each new version through a volatile field, while readers never lock
+ * and read whichever version is current. Iterations and range scans pin the version they started on in
+ * constant time, so they see the values of that moment and never copy the tree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class ConcurrentAvlTree implements Iterable<Integer> {
+
+    /*The current version of the tree, replaced under this, read without a lock*/
+    private volatile PersistentAvlTree tree;
+
+    /**
+     * The default constructor.
+     */
+    public ConcurrentAvlTree() {
+        tree = PersistentAvlTree.empty();
+    }
+
+    /**
+     * A constructor that builds a new tree containing all unique values in an input array.
+     *
+     * @param data the values to add to tree.
+     */
+    public ConcurrentAvlTree(int[] data) {
+        tree = PersistentAvlTree.of(data);
+    }
+
+    /**
+     * A constructor that copies the values of the given AvlTree.
+     *
+     * @param avlTree an AVL tree.
+     */
+    public ConcurrentAvlTree(AvlTree avlTree) {
+        tree = PersistentAvlTree.of(avlTree);
+    }
+
+    /**
+     * Add a new node with the given key to the tree.
+     *
+     * @param newValue the value of the new node to add.
+     * @return true if the value to add is not already in the tree and it was successfully added,
+     * false otherwise.
+     */
+    public synchronized boolean add(int newValue) {
+        PersistentAvlTree currentTree = tree;
+        PersistentAvlTree newTree = currentTree.add(newValue);
+        tree = newTree;
+        return newTree != currentTree;
+    }
+
+    /**
+     * Remove the node with the given value from the tree, if it exists.
+     *
+     * @param toDelete the value to remove from the tree.
+     * @return true if the given value was found and deleted, false otherwise.
+     */
+    public synchronized boolean delete(int toDelete) {
+        PersistentAvlTree currentTree = tree;
+        PersistentAvlTree newTree = currentTree.delete(toDelete);
+        tree = newTree;
+        return newTree != currentTree;
+    }
+
+    /**
+     * Adds all the values of a batch to the tree and publishes them as one version, so readers see either
+     * none or all of the batch.
+     *
+     * @param values the values to add, may contain duplicates.
+     * @return the number of values that were not already in the tree and were added.
+     */
+    public synchronized int addAll(int[] values) {
+        PersistentAvlTree newTree = tree;
+        int sizeBefore = newTree.size();
+        for (int value : values) {
+            newTree = newTree.add(value);
+        }
+        tree = newTree;
+        return newTree.size() - sizeBefore;
+    }
+
+    /**
+     * Removes all the values of a batch from the tree and publishes the result as one version, so readers
+     * see either none or all of the batch.
+     *
+     * @param values the values to remove, may contain duplicates.
+     * @return the number of values that were found in the tree and removed.
+     */
+    public synchronized int deleteAll(int[] values) {
+        PersistentAvlTree newTree = tree;
+        int sizeBefore = newTree.size();
+        for (int value : values) {
+            newTree = newTree.delete(value);
+        }
+        tree = newTree;
+        return sizeBefore - newTree.size();
+    }
+
+    /**
+     * Check whether the tree contains the given input value. Never blocks.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) with the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        return tree.contains(searchVal);
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return tree.getHeight();
+    }
+
+    /**
+     * @return an Iterator over the version of the tree at the time of the call, in an ascending order.
+     * Writes made after the call are not seen by the iterator. It does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return tree.iterator();
+    }
+
+    /**
+     * @return a primitive iterator over the version of the tree at the time of the call, in an ascending
+     * order.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return tree.intIterator();
+    }
+
+    /**
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return a primitive iterator over the values in the range [fromInclusive, toExclusive) of the version
+     * of the tree at the time of the call, in an ascending order.
+     */
+    public PrimitiveIterator.OfInt intIterator(int fromInclusive, int toExclusive) {
+        return tree.intIterator(fromInclusive, toExclusive);
+    }
+
+    /**
+     * @return a sequential stream over the version of the tree at the time of the call, in an ascending
+     * order.
+     */
+    public IntStream intStream() {
+        return tree.intStream();
+    }
+
+    /**
+     * @return a new AvlTree with the values of the tree at the time of the call.
+     */
+    public AvlTree snapshot() {
+        return AvlTree.fromSortedUnique(tree.intStream().toArray());
+    }
+}
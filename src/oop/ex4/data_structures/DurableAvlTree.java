@@ -0,0 +1,753 @@
+package oop.ex4.data_structures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * An AVL tree whose changes survive a restart. Every add and delete is appended to a write-ahead log in a
+ * directory, and the whole tree is written now and then to a checkpoint file (in the AvlTreeFile format)
+ * by a background thread. The tree is kept as a PersistentAvlTree, so a checkpoint starts from the current
+ * version in O(1) and writers go on while it is written. Each change publishes a new version through a
+ * volatile field, so lookups read the current version without taking a lock. Opening the directory loads
+ * the last checkpoint and replays the logs written since.
+ *
+ * Replaying a log record that the checkpoint already contains does no harm: the state of a value is set by
+ * the last add or delete of that value, so the log only has to keep the records in order, not to start
+ * exactly where the checkpoint ends.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class DurableAvlTree implements Iterable<Integer>, Closeable {
+
+    /**
+     * When the log is forced to the disk.
+     */
+    public enum SyncPolicy {
+        /*every change is written and forced before the call returns*/
+        SYNC_EACH,
+        /*changes are written and forced in groups, a call returns once its group is forced*/
+        GROUP_COMMIT,
+        /*changes are written and forced in groups, a call returns at once and the last group can be lost*/
+        ASYNC
+    }
+
+    /*The default time between group commits, in milliseconds*/
+    private static final long DEFAULT_GROUP_COMMIT_MILLIS = 5;
+
+    /*The default number of changes between checkpoints*/
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+    /*The operation byte of a log record*/
+    private static final byte ADD_RECORD = 1, DELETE_RECORD = 2;
+
+    /*The size of a log record: operation (byte), value (int), CRC32 of the two (int)*/
+    private static final int RECORD_BYTES = 9;
+
+    /*The bytes of a record that the record checksum covers*/
+    private static final int RECORD_PAYLOAD_BYTES = 5;
+
+    /*The first size of the buffer of records that were not written yet*/
+    private static final int INITIAL_BUFFER_BYTES = RECORD_BYTES << 12;
+
+    /*File names are prefix + generation + suffix*/
+    private static final String LOG_PREFIX = "wal-", LOG_SUFFIX = ".log";
+
+    /*Same as previous*/
+    private static final String CHECKPOINT_PREFIX = "checkpoint-", CHECKPOINT_SUFFIX = ".avlt";
+
+    /*Suffix of a checkpoint that is still being written*/
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /*The directory of the logs and checkpoints*/
+    private final Path directory;
+
+    /*When the log is forced*/
+    private final SyncPolicy syncPolicy;
+
+    /*The time between group commits, in milliseconds*/
+    private final long groupCommitMillis;
+
+    /*The number of changes between automatic checkpoints, 0 for checkpoints on request only*/
+    private final int checkpointInterval;
+
+    /*The current version of the tree, replaced under this, read without a lock*/
+    private volatile PersistentAvlTree tree;
+
+    /*Held while log records are written or the log file is replaced, always taken before this*/
+    private final Object logLock = new Object();
+
+    /*The log file of the current generation, guarded by logLock and this*/
+    private FileChannel logChannel;
+
+    /*The generation of the current log, the checkpoint of generation g has every change logged before log g*/
+    private long generation;
+
+    /*Records that were not written yet, guarded by this*/
+    private ByteBuffer pendingRecords = newRecordBuffer(INITIAL_BUFFER_BYTES);
+
+    /*The buffer of the last written batch, reused for the next one, null while a batch is written*/
+    private ByteBuffer spareRecords = newRecordBuffer(INITIAL_BUFFER_BYTES);
+
+    /*The number of records appended and the number of records forced to the disk, guarded by this*/
+    private long appendedRecords, durableRecords;
+
+    /*The changes since the last checkpoint started, guarded by this*/
+    private int changesSinceCheckpoint;
+
+    /*The checkpoint being written, null if none, guarded by this*/
+    private Future<?> runningCheckpoint;
+
+    /*The first error of the background threads, guarded by this*/
+    private IOException failure;
+
+    /*The error of the last checkpoint, null if it succeeded, guarded by this*/
+    private IOException checkpointFailure;
+
+    /*Whether close() was called, guarded by this*/
+    private boolean closed;
+
+    /*Whether close() finished with the log, guarded by this*/
+    private boolean logReleased;
+
+    /*Computes the record checksums, guarded by this*/
+    private final CRC32 recordChecksum = new CRC32();
+
+    /*Writes the log in the background, null for SYNC_EACH*/
+    private final Thread flusher;
+
+    /*Writes the checkpoints*/
+    private final ExecutorService checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "avl-tree-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens a directory with group commit and the default intervals, recovering the tree stored in it.
+     *
+     * @param directory the directory of the logs and checkpoints, created if missing.
+     * @throws IOException if the directory cannot be read or holds a damaged checkpoint.
+     */
+    public DurableAvlTree(Path directory) throws IOException {
+        this(directory, SyncPolicy.GROUP_COMMIT, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens a directory, recovering the tree stored in it.
+     *
+     * @param directory the directory of the logs and checkpoints, created if missing.
+     * @param syncPolicy when the log is forced to the disk.
+     * @param groupCommitMillis the time between group commits, in milliseconds.
+     * @param checkpointInterval the number of changes between automatic checkpoints, 0 for none.
+     * @throws IOException if the directory cannot be read or holds a damaged checkpoint.
+     */
+    public DurableAvlTree(Path directory, SyncPolicy syncPolicy, long groupCommitMillis,
+                          int checkpointInterval) throws IOException {
+        this.directory = directory;
+        this.syncPolicy = syncPolicy;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+        this.checkpointInterval = Math.max(0, checkpointInterval);
+        Files.createDirectories(directory);
+        tree = PersistentAvlTree.of(recover());
+        logChannel = openLog(generation);
+        if (syncPolicy == SyncPolicy.SYNC_EACH) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::runFlusher, "avl-tree-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Add a new node with the given key to the tree, and log it.
+     *
+     * @param newValue the value of the new node to add.
+     * @return true if the value to add is not already in the tree and it was successfully added,
+     * false otherwise.
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    public boolean add(int newValue) {
+        long recordNumber;
+        synchronized (this) {
+            checkUsable();
+            PersistentAvlTree changedTree = tree.add(newValue);
+            if (changedTree == tree) {
+                return false;
+            }
+            tree = changedTree;
+            recordNumber = appendRecord(ADD_RECORD, newValue);
+        }
+        afterChange(recordNumber);
+        return true;
+    }
+
+    /**
+     * Remove the node with the given value from the tree, if it exists, and log it.
+     *
+     * @param toDelete the value to remove from the tree.
+     * @return true if the given value was found and deleted, false otherwise.
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    public boolean delete(int toDelete) {
+        long recordNumber;
+        synchronized (this) {
+            checkUsable();
+            PersistentAvlTree changedTree = tree.delete(toDelete);
+            if (changedTree == tree) {
+                return false;
+            }
+            tree = changedTree;
+            recordNumber = appendRecord(DELETE_RECORD, toDelete);
+        }
+        afterChange(recordNumber);
+        return true;
+    }
+
+    /**
+     * Check whether the tree contains the given input value.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) with the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        return tree.contains(searchVal);
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        return tree.containsKey(searchVal);
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return tree.getHeight();
+    }
+
+    /**
+     * @return an Iterator over the tree values at the time of the call, in an ascending order. It does NOT
+     * implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return version().iterator();
+    }
+
+    /**
+     * @return the current version of the tree, it does not change with later changes to the tree.
+     */
+    public PersistentAvlTree version() {
+        return tree;
+    }
+
+    /**
+     * @return a new AvlTree with the values of the tree at the time of the call, built outside the lock.
+     */
+    public AvlTree snapshot() {
+        return AvlTree.fromSortedUnique(version().intStream().toArray());
+    }
+
+    /**
+     * A failed checkpoint loses nothing, the logs it would have replaced are kept until a later checkpoint
+     * succeeds. Automatic checkpoints report their errors only here.
+     *
+     * @return the error of the last checkpoint, null if it succeeded or none ran yet.
+     */
+    public synchronized IOException getCheckpointFailure() {
+        return checkpointFailure;
+    }
+
+    /**
+     * Waits until every change made so far is forced to the disk, whatever the sync policy is.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void sync() throws IOException {
+        flushPending();
+        forceLog();
+    }
+
+    /**
+     * Starts a checkpoint in the background, unless one is already running. The checkpoint writes the
+     * current version of the tree, taken in O(1), later changes go to a new log.
+     *
+     * @return the running checkpoint, done when the checkpoint file is in place and older files are gone.
+     * @throws IOException if the new log cannot be created.
+     */
+    public Future<?> checkpoint() throws IOException {
+        CompletableFuture<Void> checkpointDone = new CompletableFuture<>();
+        FileChannel previousLog;
+        synchronized (logLock) {
+            synchronized (this) {
+                checkUsable();
+                if (runningCheckpoint != null) {
+                    return runningCheckpoint;
+                }
+                long checkpointGeneration = generation + 1;
+                FileChannel nextLog = openLog(checkpointGeneration);
+                PersistentAvlTree treeVersion = tree;
+                previousLog = logChannel;
+                logChannel = nextLog;
+                generation = checkpointGeneration;
+                changesSinceCheckpoint = 0;
+                runningCheckpoint = checkpointDone;
+                checkpointWriter.execute(() ->
+                        writeCheckpoint(treeVersion, checkpointGeneration, checkpointDone));
+            }
+            // records still pending were made before the copy, they go to the new log and replay harmlessly
+            previousLog.force(false);
+            previousLog.close();
+        }
+        return checkpointDone;
+    }
+
+    /**
+     * Forces the log, waits for a running checkpoint and releases the files. The tree cannot be changed
+     * afterwards.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        Future<?> checkpointToWait;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            checkpointToWait = runningCheckpoint;
+            notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+            if (checkpointToWait != null) {
+                checkpointToWait.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Checkpoint failed", e.getCause());
+        } finally {
+            checkpointWriter.shutdown();
+            synchronized (logLock) {
+                logChannel.close();
+            }
+            synchronized (this) {
+                logReleased = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Appends a record to the pending records.
+     * @param operation ADD_RECORD or DELETE_RECORD.
+     * @param value the value of the change.
+     * @return the number of the record.
+     */
+    private long appendRecord(byte operation, int value) {
+        if (pendingRecords.remaining() < RECORD_BYTES) {
+            ByteBuffer largerBuffer = newRecordBuffer(pendingRecords.capacity() * 2);
+            pendingRecords.flip();
+            largerBuffer.put(pendingRecords);
+            pendingRecords = largerBuffer;
+        }
+        int recordStart = pendingRecords.position();
+        pendingRecords.put(operation).putInt(value);
+        recordChecksum.reset();
+        recordChecksum.update(pendingRecords.array(), recordStart, RECORD_PAYLOAD_BYTES);
+        pendingRecords.putInt((int) recordChecksum.getValue());
+        changesSinceCheckpoint++;
+        return ++appendedRecords;
+    }
+
+    /**
+     * Makes a change durable as the sync policy asks, and starts a checkpoint if one is due. The change
+     * is made already, so a checkpoint that cannot start is kept for getCheckpointFailure() rather than
+     * thrown.
+     * @param recordNumber the number of the record of the change.
+     */
+    private void afterChange(long recordNumber) {
+        try {
+            if (syncPolicy == SyncPolicy.SYNC_EACH) {
+                flushPending();
+            } else if (syncPolicy == SyncPolicy.GROUP_COMMIT) {
+                awaitDurable(recordNumber);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        boolean checkpointDue;
+        synchronized (this) {
+            checkpointDue = checkpointInterval > 0 && changesSinceCheckpoint >= checkpointInterval &&
+                    runningCheckpoint == null && !closed;
+        }
+        if (checkpointDue) {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                recordCheckpointResult(e instanceof IOException ? (IOException) e :
+                        new IOException("Checkpoint failed", e));
+            }
+        }
+    }
+
+    /**
+     * Waits until a given record is forced, by the background flusher or by close().
+     * @param recordNumber the number of the record.
+     * @throws IOException if the log failed, or close() finished without forcing the record.
+     */
+    private synchronized void awaitDurable(long recordNumber) throws IOException {
+        boolean interrupted = false;
+        while (durableRecords < recordNumber && failure == null && !logReleased) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (durableRecords < recordNumber) {
+            throw new IOException("The tree was closed before the change was forced");
+        }
+    }
+
+    /**
+     * Writes and forces every pending record to the current log.
+     * @throws IOException if the log cannot be written.
+     */
+    private void flushPending() throws IOException {
+        synchronized (logLock) {
+            ByteBuffer batch;
+            FileChannel channel;
+            long batchEnd;
+            synchronized (this) {
+                if (pendingRecords.position() == 0) {
+                    return;
+                }
+                batch = pendingRecords;
+                batch.flip();
+                pendingRecords = spareRecords != null ? spareRecords : newRecordBuffer(INITIAL_BUFFER_BYTES);
+                spareRecords = null;
+                channel = logChannel;
+                batchEnd = appendedRecords;
+            }
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (syncPolicy != SyncPolicy.ASYNC) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                recordFailure(e);
+                throw e;
+            }
+            synchronized (this) {
+                durableRecords = Math.max(durableRecords, batchEnd);
+                batch.clear();
+                spareRecords = batch;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces what was written to the current log.
+     * @throws IOException if the log cannot be forced.
+     */
+    private void forceLog() throws IOException {
+        synchronized (logLock) {
+            FileChannel channel;
+            synchronized (this) {
+                channel = logChannel;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                recordFailure(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Keeps the first log error, so that later changes fail instead of being lost, and wakes the waiting
+     * writers.
+     * @param error the error.
+     */
+    private synchronized void recordFailure(IOException error) {
+        if (failure == null) {
+            failure = error;
+        }
+        notifyAll();
+    }
+
+    /**
+     * The loop of the background flusher: writes the pending records every group commit interval.
+     */
+    private void runFlusher() {
+        while (true) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    wait(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                flushPending();
+                if (syncPolicy == SyncPolicy.ASYNC) {
+                    forceLog();
+                }
+            } catch (IOException e) {
+                return;  // kept in failure, the next change reports it
+            }
+        }
+    }
+
+    /**
+     * Keeps the result of a checkpoint.
+     * @param error the error of the checkpoint, null if it succeeded.
+     */
+    private synchronized void recordCheckpointResult(IOException error) {
+        checkpointFailure = error;
+    }
+
+    /**
+     * Writes a checkpoint file and deletes the checkpoints and logs it replaces. Runs on the checkpoint
+     * thread.
+     * @param treeVersion the version of the tree to write.
+     * @param checkpointGeneration the generation of the checkpoint.
+     * @param checkpointDone completed when the checkpoint is in place.
+     */
+    private void writeCheckpoint(PersistentAvlTree treeVersion, long checkpointGeneration,
+                                 CompletableFuture<Void> checkpointDone) {
+        try {
+            Path temporaryFile = checkpointPath(checkpointGeneration).resolveSibling(
+                    CHECKPOINT_PREFIX + checkpointGeneration + CHECKPOINT_SUFFIX + TEMPORARY_SUFFIX);
+            AvlTreeFile.write(treeVersion.intIterator(), treeVersion.size(), temporaryFile);
+            Files.move(temporaryFile, checkpointPath(checkpointGeneration), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory();
+            for (long olderGeneration : generations(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+                if (olderGeneration < checkpointGeneration) {
+                    Files.deleteIfExists(checkpointPath(olderGeneration));
+                }
+            }
+            for (long olderGeneration : generations(LOG_PREFIX, LOG_SUFFIX)) {
+                if (olderGeneration < checkpointGeneration) {
+                    Files.deleteIfExists(logPath(olderGeneration));
+                }
+            }
+            recordCheckpointResult(null);
+            checkpointDone.complete(null);
+        } catch (IOException e) {
+            recordCheckpointResult(e);
+            checkpointDone.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            recordCheckpointResult(new IOException("Checkpoint failed", e));
+            checkpointDone.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                runningCheckpoint = null;
+            }
+        }
+    }
+
+    /**
+     * Forces the entries of the directory, so a renamed checkpoint is on the disk before the files it
+     * replaces are deleted.
+     * @throws IOException if the directory cannot be forced.
+     */
+    private void forceDirectory() throws IOException {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+    }
+
+    /**
+     * Loads the last checkpoint and replays the logs that may hold later changes. Sets the generation of
+     * the new log above every file in the directory.
+     * @return the recovered tree.
+     * @throws IOException if the directory cannot be read or the checkpoint is damaged.
+     */
+    private AvlTree recover() throws IOException {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        List<Long> checkpoints = generations(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        long checkpointGeneration = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1);
+        AvlTree recoveredTree;
+        if (checkpoints.isEmpty()) {
+            recoveredTree = new AvlTree();
+        } else {
+            AvlTreeFile checkpointFile = AvlTreeFile.open(checkpointPath(checkpointGeneration));
+            if (!checkpointFile.verifyChecksum()) {
+                throw new IOException("Damaged checkpoint: " + checkpointPath(checkpointGeneration));
+            }
+            recoveredTree = checkpointFile.toAvlTree();
+        }
+        long lastGeneration = checkpointGeneration;
+        for (long logGeneration : generations(LOG_PREFIX, LOG_SUFFIX)) {
+            if (logGeneration >= checkpointGeneration) {
+                replayLog(logPath(logGeneration), recoveredTree);
+            }
+            lastGeneration = Math.max(lastGeneration, logGeneration);
+        }
+        generation = lastGeneration + 1;
+        return recoveredTree;
+    }
+
+    /**
+     * Applies the records of a log to a tree, up to the end of the log or the first damaged record (the
+     * tail of a write that was cut off).
+     * @param logFile the log to replay.
+     * @param targetTree the tree to apply the records to.
+     * @throws IOException if the log cannot be read.
+     */
+    private static void replayLog(Path logFile, AvlTree targetTree) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(logFile)).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 checksum = new CRC32();
+        while (records.remaining() >= RECORD_BYTES) {
+            int recordStart = records.position();
+            byte operation = records.get();
+            int value = records.getInt();
+            checksum.reset();
+            checksum.update(records.array(), recordStart, RECORD_PAYLOAD_BYTES);
+            if (records.getInt() != (int) checksum.getValue()) {
+                return;
+            }
+            if (operation == ADD_RECORD) {
+                targetTree.add(value);
+            } else if (operation == DELETE_RECORD) {
+                targetTree.delete(value);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lists the generations of the files with a given name pattern.
+     * @param prefix the start of the file names.
+     * @param suffix the end of the file names.
+     * @return the generations in ascending order.
+     * @throws IOException if the directory cannot be read.
+     */
+    private List<Long> generations(String prefix, String suffix) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    String generationText = name.substring(prefix.length(), name.length() - suffix.length());
+                    found.add(Long.parseLong(generationText));
+                } catch (NumberFormatException e) {
+                    // not one of our files
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * Creates an empty log file, or opens it for appending if it exists.
+     * @param logGeneration the generation of the log.
+     * @return the channel of the log.
+     * @throws IOException if the file cannot be opened.
+     */
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(logPath(logGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param logGeneration a generation.
+     * @return the path of the log of the generation.
+     */
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+
+    /**
+     * @param checkpointGeneration a generation.
+     * @return the path of the checkpoint of the generation.
+     */
+    private Path checkpointPath(long checkpointGeneration) {
+        return directory.resolve(CHECKPOINT_PREFIX + checkpointGeneration + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Throws if the tree was closed or the log failed.
+     */
+    private void checkUsable() {
+        if (closed) {
+            throw new IllegalStateException("The tree is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * @param capacity the size of the buffer in bytes.
+     * @return a heap buffer for log records.
+     */
+    private static ByteBuffer newRecordBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
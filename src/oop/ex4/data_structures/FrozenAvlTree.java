@@ -0,0 +1,232 @@
+package oop.ex4.data_structures;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable snapshot of an AvlTree for read only traffic, made by AvlTree.freeze(). The values are kept
+ * in a single int array in Eytzinger (breadth first) order: the root is at index 1 and the children of the
+ * node at index k are at 2k and 2k+1, so the snapshot takes 4 bytes per value and a search reads the top
+ * levels of the tree from the same few cache lines.
+ *
+ * The implicit tree is complete rather than the shape of the source tree, so the depths that contains
+ * reports are depths in the snapshot, which is never taller than the source tree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class FrozenAvlTree implements Iterable<Integer> {
+
+    /*The most values a snapshot can hold, so that 2k+1 never overflows for an index k in the tree*/
+    static final int MAX_VALUES = (1 << 30) - 1;
+
+    /*The values in Eytzinger order, index 0 is unused*/
+    private final int[] values;
+
+    /*The number of values*/
+    private final int numberOfValues;
+
+    /**
+     * Lays out values that come in ascending order.
+     * @param sortedValues the values, strictly ascending.
+     * @param numberOfValues the number of values the iterator returns, at most MAX_VALUES.
+     */
+    FrozenAvlTree(PrimitiveIterator.OfInt sortedValues, int numberOfValues) {
+        this.numberOfValues = numberOfValues;
+        values = new int[numberOfValues + 1];
+        // an in-order walk of the implicit tree takes the values in ascending order
+        int index = leftmostIndex(1);
+        while (index != 0) {
+            values[index] = sortedValues.nextInt();
+            index = nextIndex(index);
+        }
+    }
+
+    /**
+     * Check whether the snapshot contains the given input value. The descent has no data dependent
+     * branches: each level adds the result of the comparison to the index, and the position of the value is
+     * recovered from the index at the end.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the value (0 for the root) in the snapshot if it was found, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        int index = lowerBoundIndex(searchVal);
+        if (index == 0 || values[index] != searchVal) {
+            return -1;
+        }
+        return depthOf(index);
+    }
+
+    /**
+     * Check whether the snapshot contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the snapshot, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        int index = lowerBoundIndex(searchVal);
+        return index != 0 && values[index] == searchVal;
+    }
+
+    /**
+     * @return the number of values in the snapshot.
+     */
+    public int size() {
+        return numberOfValues;
+    }
+
+    /**
+     * @return the height of the implicit tree, 0 if the snapshot is empty.
+     */
+    public int getHeight() {
+        return numberOfValues == 0 ? 0 : depthOf(numberOfValues);
+    }
+
+    /**
+     * @return the number of bytes the values take, per value.
+     */
+    public double bytesPerKey() {
+        return numberOfValues == 0 ? 0 : (double) values.length * Integer.BYTES / numberOfValues;
+    }
+
+    /**
+     * @return an Iterator over the values in an ascending order, it does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new FrozenIterator(leftmostIndex(1), Integer.MAX_VALUE + 1L);
+    }
+
+    /**
+     * @return a primitive iterator over the values in an ascending order.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new FrozenIterator(leftmostIndex(1), Integer.MAX_VALUE + 1L);
+    }
+
+    /**
+     * @return a sequential stream of the values in an ascending order.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(Spliterators.spliterator(intIterator(), numberOfValues,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL |
+                        Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return a sequential stream of the values in the range [fromInclusive, toExclusive) in an ascending
+     * order, positioned on the first value in O(log n).
+     */
+    public IntStream intStream(int fromInclusive, int toExclusive) {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(
+                new FrozenIterator(lowerBoundIndex(fromInclusive), toExclusive),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL |
+                        Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * @return a new AvlTree with the values of the snapshot.
+     */
+    public AvlTree toAvlTree() {
+        return AvlTree.fromSortedUnique(intStream().toArray());
+    }
+
+    /**
+     * Finds the smallest value not smaller than a given value. The comparison result is taken from the sign
+     * of a long subtraction, so the loop body is straight line code.
+     * @param value the value to search for.
+     * @return the index of the smallest value at or above the given one, 0 if there is none.
+     */
+    private int lowerBoundIndex(int value) {
+        int index = 1;
+        while (index <= numberOfValues) {
+            index = 2 * index + (int) (((long) values[index] - value) >>> (Long.SIZE - 1));
+        }
+        // the last left turn of the descent is the answer, drop the right turns after it and the turn itself
+        return index >>> (Integer.numberOfTrailingZeros(~index) + 1);
+    }
+
+    /**
+     * @param index an index of the implicit tree, at least 1.
+     * @return the depth of the index, 0 for the root.
+     */
+    private static int depthOf(int index) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(index);
+    }
+
+    /**
+     * @param index an index of the implicit tree, may be out of it.
+     * @return the index of the smallest value in the subtree of the index, 0 if the subtree is empty.
+     */
+    private int leftmostIndex(int index) {
+        if (index > numberOfValues) {
+            return 0;
+        }
+        while (2 * index <= numberOfValues) {
+            index = 2 * index;
+        }
+        return index;
+    }
+
+    /**
+     * @param index an index of the implicit tree.
+     * @return the index of the next larger value, 0 if the index holds the largest value.
+     */
+    private int nextIndex(int index) {
+        if (2 * index + 1 <= numberOfValues) {
+            return leftmostIndex(2 * index + 1);
+        }
+        // climb while coming from a right child, the parent above the last left child is next
+        return index >>> (Integer.numberOfTrailingZeros(~index) + 1);
+    }
+
+    /**
+     * The iterator of a snapshot, walks the indexes in order.
+     */
+    private class FrozenIterator implements PrimitiveIterator.OfInt {
+        /*The index of the next value to return, 0 when done*/
+        int upcomingIndex;
+
+        /*The iteration stops before the first value that is not smaller than this*/
+        final long upperBound;
+
+        /**
+         * @param startIndex the index of the first value, 0 for an empty iteration.
+         * @param upperBound the exclusive upper bound of the values.
+         */
+        FrozenIterator(int startIndex, long upperBound) {
+            this.upperBound = upperBound;
+            upcomingIndex = startIndex != 0 && values[startIndex] < upperBound ? startIndex : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return upcomingIndex != 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (upcomingIndex == 0) {
+                throw new NoSuchElementException();
+            }
+            int data = values[upcomingIndex];
+            upcomingIndex = nextIndex(upcomingIndex);
+            if (upcomingIndex != 0 && values[upcomingIndex] >= upperBound) {
+                upcomingIndex = 0;
+            }
+            return data;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package oop.ex4.data_structures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An implementation of the AVL tree data structure for long values, such as timestamps. It has the API of
+ * AvlTree, with the values kept as primitive longs so nothing is boxed. The balancing is shared with
+ * AvlTreeMap through AbstractAvlTree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public class LongAvlTree extends AbstractAvlTree<LongAvlTree.Node> implements Iterable<Long> {
+
+    /*Inputs at least this long are sorted with the parallel sort, as in AvlTree*/
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    /**
+     * A node of the tree, same as TreeNode but holding a long.
+     */
+    static final class Node extends AbstractAvlTree.Node<Node> {
+        /*data field for the node*/
+        final long data;
+
+        /**
+         * @param data the value of the node.
+         */
+        Node(long data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * The default constructor.
+     */
+    public LongAvlTree() {
+        rootNode = null;
+        numberOfNodes = 0;
+    }
+
+    /**
+     * A constructor that builds a new AVL tree containing all unique values in an input array. The values
+     * are sorted and the tree is built balanced in one pass, without rotations, as in AvlTree.
+     *
+     * @param data the values to add to tree.
+     */
+    public LongAvlTree(long[] data) {
+        this();
+        if (data != null) {
+            long[] sortedValues = sortedUnique(data);
+            buildBalanced(sortedValues.length, index -> new Node(sortedValues[index]));
+        }
+    }
+
+    /**
+     * A copy constructor that creates a deep copy of the given LongAvlTree. The new tree contains all the
+     * values of the given tree in the same structure, the nodes are cloned one by one without any
+     * comparisons or rotations.
+     *
+     * @param longAvlTree an AVL tree of longs.
+     */
+    public LongAvlTree(LongAvlTree longAvlTree) {
+        this();
+        if (longAvlTree != null) {
+            copyFrom(longAvlTree, sourceNode -> new Node(sourceNode.data));
+        }
+    }
+
+    /**
+     * Returns a sorted copy of the input with every value appearing once.
+     * @param data the values to sort.
+     * @return a new sorted array without duplicates.
+     */
+    private static long[] sortedUnique(long[] data) {
+        long[] sorted = data.clone();
+        if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        int uniqueCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (uniqueCount == 0 || sorted[i] != sorted[uniqueCount - 1]) {
+                sorted[uniqueCount++] = sorted[i];
+            }
+        }
+        return uniqueCount == sorted.length ? sorted : Arrays.copyOf(sorted, uniqueCount);
+    }
+
+    /**
+     * Add a new node with the given key to the tree.
+     *
+     * @param newValue the value of the new node to add.
+     * @return true if the value to add is not already in the tree and it was successfully added,
+     * false otherwise.
+     */
+    public boolean add(long newValue) {
+        Node closestNode = rootNode == null ? null : findClosestNode(newValue);
+        if (closestNode != null && closestNode.data == newValue) {
+            return false;
+        }
+        attachLeaf(closestNode, new Node(newValue), closestNode != null && newValue < closestNode.data);
+        return true;
+    }
+
+    /**
+     * Remove the node with the given value from the tree, if it exists.
+     *
+     * @param toDelete the value to remove from the tree.
+     * @return true if the given value was found and deleted, false otherwise.
+     */
+    public boolean delete(long toDelete) {
+        if (rootNode == null) {
+            return false;
+        }
+        Node closestNode = findClosestNode(toDelete);
+        if (closestNode.data != toDelete) {
+            return false;
+        }
+        unlink(closestNode);
+        return true;
+    }
+
+    /**
+     * Check whether the tree contains the given input value.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) with the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(long searchVal) {
+        Node currentNode = rootNode;
+        int distanceFromRoot = 0;
+        while (currentNode != null) {
+            if (searchVal == currentNode.data) {
+                return distanceFromRoot;
+            }
+            currentNode = searchVal < currentNode.data ? currentNode.leftChild : currentNode.rightChild;
+            distanceFromRoot++;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(long searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return an Iterator for the tree. The returned iterator goes over the values in an ascending order,
+     * and does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Long> iterator() {
+        return new LongAvlTreeIterator();
+    }
+
+    /**
+     * @return a primitive iterator over the values of the tree in an ascending order.
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        return new LongAvlTreeIterator();
+    }
+
+    /**
+     * @return a sequential stream of the values of the tree in an ascending order.
+     */
+    public LongStream longStream() {
+        return StreamSupport.longStream(Spliterators.spliterator(longIterator(), numberOfNodes,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL),
+                false);
+    }
+
+    /**
+     * Finds the node in the tree with data closest to the input value, by the BST property. The tree must
+     * not be empty.
+     * @param value the value to search for.
+     * @return the matching node if the value is in the tree, otherwise the node to hang it on.
+     */
+    private Node findClosestNode(long value) {
+        Node currentNode = rootNode;
+        while (true) {
+            Node nextNode;
+            if (value == currentNode.data) {
+                return currentNode;
+            } else if (value < currentNode.data) {
+                nextNode = currentNode.leftChild;
+            } else {
+                nextNode = currentNode.rightChild;
+            }
+            if (nextNode == null) {
+                return currentNode;
+            }
+            currentNode = nextNode;
+        }
+    }
+
+    /**
+     * The Iterator object of a LongAvlTree. Walks the tree in order using the parent pointers.
+     */
+    private class LongAvlTreeIterator implements PrimitiveIterator.OfLong {
+        Node upcomingNode;
+
+        /**
+         * Starts the iterator at the smallest value.
+         */
+        LongAvlTreeIterator() {
+            upcomingNode = firstNode();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return upcomingNode != null;
+        }
+
+        @Override
+        public long nextLong() {
+            if (upcomingNode == null) {
+                throw new NoSuchElementException();
+            }
+            Node currentNode = upcomingNode;
+            upcomingNode = nextNode(currentNode);
+            return currentNode.data;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package oop.ex4.data_structures;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable AVL tree. Adding or deleting a value returns a new version of the tree that copies only the
+ * nodes on the changed path and shares every other node with the version it came from. Since nodes are
+ * never changed, every version can be read by any number of threads without locking, and keeping a
+ * snapshot is free.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+public final class PersistentAvlTree implements Iterable<Integer> {
+
+    /*The allowed balance factor in the tree*/
+    private static final int ALLOWED_BALANCE_DIFFERENCE = 2;
+
+    /*The version of the empty tree*/
+    private static final PersistentAvlTree EMPTY = new PersistentAvlTree(null, 0);
+
+    /*The root node of this version*/
+    private final Node rootNode;
+
+    /*The number of nodes this version allocated on top of the version it was made from*/
+    private final int copiedNodes;
+
+    /**
+     * An immutable node. Nodes have no parent pointer, so one node can be part of many versions.
+     */
+    private static final class Node {
+        /*data field for the node, distance form furthest leaf and size of the subtree*/
+        final int data, height, subtreeSize;
+
+        /*pointers to the children*/
+        final Node leftChild, rightChild;
+
+        /**
+         * Creates a node and computes its height and size from the children.
+         * @param data the value of the node.
+         * @param leftChild the left child, may be null.
+         * @param rightChild the right child, may be null.
+         */
+        Node(int data, Node leftChild, Node rightChild) {
+            this.data = data;
+            this.leftChild = leftChild;
+            this.rightChild = rightChild;
+            this.height = Math.max(heightOf(leftChild), heightOf(rightChild)) + 1;
+            this.subtreeSize = sizeOf(leftChild) + sizeOf(rightChild) + 1;
+        }
+    }
+
+    /**
+     * Creates a version with the given root.
+     * @param rootNode the root node.
+     * @param copiedNodes the number of nodes allocated for this version.
+     */
+    private PersistentAvlTree(Node rootNode, int copiedNodes) {
+        this.rootNode = rootNode;
+        this.copiedNodes = copiedNodes;
+    }
+
+    /**
+     * @return the empty tree.
+     */
+    public static PersistentAvlTree empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a balanced tree containing all unique values in an input array, in linear time after sorting.
+     *
+     * @param data the values to add to tree.
+     * @return the tree with the values.
+     */
+    public static PersistentAvlTree of(int[] data) {
+        return data == null ? EMPTY : fromSorted(AvlTree.sortedUnique(data));
+    }
+
+    /**
+     * Builds a balanced tree containing the values of an AvlTree, in linear time.
+     *
+     * @param avlTree an AVL tree.
+     * @return the tree with the values.
+     */
+    public static PersistentAvlTree of(AvlTree avlTree) {
+        return avlTree == null ? EMPTY : fromSorted(avlTree.toSortedArray());
+    }
+
+    /**
+     * @param sortedValues values in strictly ascending order.
+     * @return a balanced tree with the values.
+     */
+    private static PersistentAvlTree fromSorted(int[] sortedValues) {
+        return new PersistentAvlTree(buildBalancedSubtree(sortedValues, 0, sortedValues.length - 1),
+                sortedValues.length);
+    }
+
+    /**
+     * Builds a balanced subtree from a range of a sorted array, the middle value becomes the root.
+     * @param sortedValues values in strictly ascending order.
+     * @param from the first index of the range.
+     * @param to the last index of the range (inclusive).
+     * @return the root of the new subtree, null if the range is empty.
+     */
+    private static Node buildBalancedSubtree(int[] sortedValues, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node(sortedValues[middle], buildBalancedSubtree(sortedValues, from, middle - 1),
+                buildBalancedSubtree(sortedValues, middle + 1, to));
+    }
+
+    /**
+     * Returns a version of the tree with the given value added. This version is not changed.
+     *
+     * @param newValue the value to add.
+     * @return the new version, or this version if the value is already in the tree.
+     */
+    public PersistentAvlTree add(int newValue) {
+        PathCopy pathCopy = new PathCopy();
+        Node newRoot = pathCopy.insert(rootNode, newValue);
+        return newRoot == rootNode ? this : new PersistentAvlTree(newRoot, pathCopy.createdNodes);
+    }
+
+    /**
+     * Returns a version of the tree without the given value. This version is not changed.
+     *
+     * @param toDelete the value to remove.
+     * @return the new version, or this version if the value is not in the tree.
+     */
+    public PersistentAvlTree delete(int toDelete) {
+        PathCopy pathCopy = new PathCopy();
+        Node newRoot = pathCopy.remove(rootNode, toDelete);
+        return newRoot == rootNode ? this : new PersistentAvlTree(newRoot, pathCopy.createdNodes);
+    }
+
+    /**
+     * Check whether the tree contains the given input value.
+     *
+     * @param searchVal the value to search for.
+     * @return the depth of the node (0 for the root) with the given value if it was found in
+     * the tree, -1 otherwise.
+     */
+    public int contains(int searchVal) {
+        Node currentNode = rootNode;
+        int distanceFromRoot = 0;
+        while (currentNode != null) {
+            if (searchVal == currentNode.data) {
+                return distanceFromRoot;
+            }
+            currentNode = searchVal < currentNode.data ? currentNode.leftChild : currentNode.rightChild;
+            distanceFromRoot++;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the tree contains the given input value, without computing its depth.
+     *
+     * @param searchVal the value to search for.
+     * @return true if the value is in the tree, false otherwise.
+     */
+    public boolean containsKey(int searchVal) {
+        return contains(searchVal) >= 0;
+    }
+
+    /**
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return sizeOf(rootNode);
+    }
+
+    /**
+     * returns the tree height
+     * @return the height of the tree.
+     */
+    public int getHeight() {
+        return rootNode == null ? 0 : rootNode.height;
+    }
+
+    /**
+     * The memory cost of this version: the nodes it allocated, every other node is shared with the version
+     * it was made from. A version built from scratch reports all of its nodes.
+     *
+     * @return the number of nodes allocated for this version.
+     */
+    public int copiedNodes() {
+        return copiedNodes;
+    }
+
+    /**
+     * @return an Iterator for the tree. The returned iterator goes over the values in an ascending order,
+     * and does NOT implement the remove() method.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new PersistentAvlTreeIterator();
+    }
+
+    /**
+     * @return a primitive iterator over the values of the tree in an ascending order.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PersistentAvlTreeIterator();
+    }
+
+    /**
+     * @param fromInclusive the lowest value of the range.
+     * @param toExclusive the value above the range.
+     * @return a primitive iterator over the values in the range [fromInclusive, toExclusive) in an ascending
+     * order.
+     */
+    public PrimitiveIterator.OfInt intIterator(int fromInclusive, int toExclusive) {
+        return new PersistentAvlTreeIterator(fromInclusive, toExclusive);
+    }
+
+    /**
+     * @return a sequential stream of the values of the tree in an ascending order.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(Spliterators.spliterator(intIterator(), size(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL |
+                        Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * @param node a node, may be null.
+     * @return the height of the node, -1 if null.
+     */
+    private static int heightOf(Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * @param node a node, may be null.
+     * @return the size of the subtree of the node, 0 if null.
+     */
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.subtreeSize;
+    }
+
+    /**
+     * A single add or delete. Rebuilds the nodes of the search path with a top-down recursion, balancing
+     * every copied node on the way back up, and counts the nodes it allocates.
+     */
+    private static final class PathCopy {
+        /*The nodes allocated so far*/
+        int createdNodes;
+
+        /**
+         * @param subtreeRoot the root of the subtree to add to, may be null.
+         * @param value the value to add.
+         * @return the root of the new subtree, subtreeRoot itself if the value is already there.
+         */
+        Node insert(Node subtreeRoot, int value) {
+            if (subtreeRoot == null) {
+                return newNode(value, null, null);
+            }
+            if (value < subtreeRoot.data) {
+                Node newLeft = insert(subtreeRoot.leftChild, value);
+                return newLeft == subtreeRoot.leftChild ? subtreeRoot :
+                        balance(subtreeRoot.data, newLeft, subtreeRoot.rightChild);
+            } else if (value > subtreeRoot.data) {
+                Node newRight = insert(subtreeRoot.rightChild, value);
+                return newRight == subtreeRoot.rightChild ? subtreeRoot :
+                        balance(subtreeRoot.data, subtreeRoot.leftChild, newRight);
+            }
+            return subtreeRoot;
+        }
+
+        /**
+         * @param subtreeRoot the root of the subtree to remove from, may be null.
+         * @param value the value to remove.
+         * @return the root of the new subtree, subtreeRoot itself if the value is not there.
+         */
+        Node remove(Node subtreeRoot, int value) {
+            if (subtreeRoot == null) {
+                return null;
+            }
+            if (value < subtreeRoot.data) {
+                Node newLeft = remove(subtreeRoot.leftChild, value);
+                return newLeft == subtreeRoot.leftChild ? subtreeRoot :
+                        balance(subtreeRoot.data, newLeft, subtreeRoot.rightChild);
+            } else if (value > subtreeRoot.data) {
+                Node newRight = remove(subtreeRoot.rightChild, value);
+                return newRight == subtreeRoot.rightChild ? subtreeRoot :
+                        balance(subtreeRoot.data, subtreeRoot.leftChild, newRight);
+            }
+            if (subtreeRoot.leftChild == null) {
+                return subtreeRoot.rightChild;
+            }
+            if (subtreeRoot.rightChild == null) {
+                return subtreeRoot.leftChild;
+            }
+            Node successor = subtreeRoot.rightChild;
+            while (successor.leftChild != null) {
+                successor = successor.leftChild;
+            }
+            return balance(successor.data, subtreeRoot.leftChild,
+                    remove(subtreeRoot.rightChild, successor.data));
+        }
+
+        /**
+         * Creates a node with the given children, rotating if the AVL property is violated. The children
+         * are balanced and their heights differ by at most ALLOWED_BALANCE_DIFFERENCE.
+         * @param data the value of the node.
+         * @param leftChild the left child, may be null.
+         * @param rightChild the right child, may be null.
+         * @return the root of the balanced subtree.
+         */
+        Node balance(int data, Node leftChild, Node rightChild) {
+            int balanceFactor = heightOf(leftChild) - heightOf(rightChild);
+            if (Math.abs(balanceFactor) < ALLOWED_BALANCE_DIFFERENCE) {
+                return newNode(data, leftChild, rightChild);
+            } else if (balanceFactor < 0) {
+                // The imbalance is right heavy.
+                if (heightOf(rightChild.rightChild) < heightOf(rightChild.leftChild)) {
+                    // RL case
+                    Node pivot = rightChild.leftChild;
+                    return newNode(pivot.data, newNode(data, leftChild, pivot.leftChild),
+                            newNode(rightChild.data, pivot.rightChild, rightChild.rightChild));
+                }
+                // RR case
+                return newNode(rightChild.data, newNode(data, leftChild, rightChild.leftChild),
+                        rightChild.rightChild);
+            } else {
+                // The imbalance is left heavy.
+                if (heightOf(leftChild.rightChild) > heightOf(leftChild.leftChild)) {
+                    // LR case
+                    Node pivot = leftChild.rightChild;
+                    return newNode(pivot.data, newNode(leftChild.data, leftChild.leftChild, pivot.leftChild),
+                            newNode(data, pivot.rightChild, rightChild));
+                }
+                // LL case
+                return newNode(leftChild.data, leftChild.leftChild,
+                        newNode(data, leftChild.rightChild, rightChild));
+            }
+        }
+
+        /**
+         * Allocates a node and counts it.
+         * @param data the value of the node.
+         * @param leftChild the left child, may be null.
+         * @param rightChild the right child, may be null.
+         * @return the new node.
+         */
+        Node newNode(int data, Node leftChild, Node rightChild) {
+            createdNodes++;
+            return new Node(data, leftChild, rightChild);
+        }
+    }
+
+    /**
+     * The Iterator object of a persistent tree. Keeps the path to the next node on an explicit stack,
+     * since the nodes have no parent pointers.
+     */
+    private class PersistentAvlTreeIterator implements PrimitiveIterator.OfInt {
+        /*The nodes whose value and right subtree are still to be visited, the top is the next node*/
+        final Node[] pendingNodes = new Node[getHeight() + 1];
+
+        /*Number of nodes on the stack*/
+        int pendingCount = 0;
+
+        /*The value above the last value to return*/
+        final long upperBound;
+
+        /**
+         * Starts the iterator at the smallest value.
+         */
+        PersistentAvlTreeIterator() {
+            upperBound = Integer.MAX_VALUE + 1L;
+            pushLeftSpine(rootNode);
+        }
+
+        /**
+         * Starts the iterator at the smallest value not below fromInclusive, keeping on the stack only the
+         * nodes of the search path that are not below it.
+         * @param fromInclusive the lowest value of the range.
+         * @param toExclusive the value above the range.
+         */
+        PersistentAvlTreeIterator(int fromInclusive, int toExclusive) {
+            upperBound = toExclusive;
+            Node currentNode = rootNode;
+            while (currentNode != null) {
+                if (currentNode.data >= fromInclusive) {
+                    pendingNodes[pendingCount++] = currentNode;
+                    currentNode = currentNode.leftChild;
+                } else {
+                    currentNode = currentNode.rightChild;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pendingCount > 0 && pendingNodes[pendingCount - 1].data < upperBound;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node currentNode = pendingNodes[--pendingCount];
+            pushLeftSpine(currentNode.rightChild);
+            return currentNode.data;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Pushes a node and all of its left descendants.
+         * @param currentNode the top of the spine, may be null.
+         */
+        private void pushLeftSpine(Node currentNode) {
+            while (currentNode != null) {
+                pendingNodes[pendingCount++] = currentNode;
+                currentNode = currentNode.leftChild;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package oop.ex4.data_structures;
+
+/**
+ * class SummedTreeNode is a TreeNode that also keeps the sum of the data in its subtree, used by the AVL
+ * trees that have subtree sums enabled. All the nodes of such a tree are SummedTreeNodes.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class SummedTreeNode extends TreeNode {
+
+    /*sum of the data of the nodes in the subtree rooted at this node, including itself*/
+    private long subtreeSum;
+
+    /**
+     * constructor for a node when a parent exists
+     * @param data the data to insert
+     * @param parent pointer to parent node, null for the root
+     */
+    SummedTreeNode(int data, TreeNode parent) {
+        super(data, parent);
+        subtreeSum = data;
+    }
+
+    /**
+     * Turns the node back into a fresh leaf, as the constructor leaves it, so a removed node can be reused.
+     * @param data the value of the node.
+     * @param parent pointer to parent node
+     */
+    @Override
+    void reset(int data, TreeNode parent) {
+        super.reset(data, parent);
+        subtreeSum = data;
+    }
+
+    /**
+     * the sum of the data in the subtree rooted at this node
+     * @return subtree sum(long)
+     */
+    public long getSubtreeSum() {
+        return subtreeSum;
+    }
+
+    /**
+     * updates the subtree size and subtree sum of a node based upon it's children, without touching the
+     * height
+     */
+    @Override
+    public void fixSize() {
+        super.fixSize();
+        subtreeSum = getLeftChildSum() + getRightChildSum() + getData();
+    }
+
+    /**
+     * returns the subtree sum of the right child node
+     * @return the sum as a long, 0 if null
+     */
+    public long getRightChildSum() {
+        TreeNode rightChild = getRightChild();
+        return rightChild != null ? ((SummedTreeNode) rightChild).subtreeSum : 0;
+    }
+
+    /**
+     * returns the subtree sum of the left child node
+     * @return the sum as a long, 0 if null
+     */
+    public long getLeftChildSum() {
+        TreeNode leftChild = getLeftChild();
+        return leftChild != null ? ((SummedTreeNode) leftChild).subtreeSum : 0;
+    }
+
+}
@@ -23,6 +23,9 @@ class TreeNode {
     /*data field for the node, and distance form furthest leaf*/
     private int data, height;
 
+    /*number of nodes in the subtree rooted at this node, including itself*/
+    private int subtreeSize;
+
     /**
      * The default constructor.
      *
@@ -34,6 +37,7 @@ class TreeNode {
         rightChild = null;
         leftChild = null;
         height = 0;
+        subtreeSize = 1;
     }
 
     /**
@@ -46,6 +50,20 @@ class TreeNode {
         this.parent = parent;
     }
 
+    /**
+     * Turns the node back into a fresh leaf, as the constructor leaves it, so a removed node can be reused.
+     * @param data the value of the node.
+     * @param parent pointer to parent node
+     */
+    void reset(int data, TreeNode parent) {
+        this.data = data;
+        this.parent = parent;
+        rightChild = null;
+        leftChild = null;
+        height = 0;
+        subtreeSize = 1;
+    }
+
     /**
      * getter for data
      * @return data(int)
@@ -71,11 +89,35 @@ class TreeNode {
     }
 
     /**
-     * updates the height of a node based upon it's children
+     * setter for the height, for a node that takes the place of another node in the tree
+     * @param height the height to set
+     */
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * updates the height and subtree size of a node based upon it's children
      */
     public void fixHeight() {
             height = Math.max(getLeftChildHeight(), getRightChildHeight()) + 1;//1 isn't a constant as it
         // is a single use case.
+        fixSize();
+    }
+
+    /**
+     * the number of nodes in the subtree rooted at this node
+     * @return subtree size(int), at least 1
+     */
+    public int getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    /**
+     * updates the subtree size of a node based upon it's children, without touching the height
+     */
+    public void fixSize() {
+        subtreeSize = getLeftChildSize() + getRightChildSize() + 1;
     }
 
     /**
@@ -122,6 +164,14 @@ class TreeNode {
         }
     }
 
+    /**
+     * returns the subtree size of the right child node
+     * @return the size as an int, 0 if null
+     */
+    public int getRightChildSize() {
+        return rightChild != null ? rightChild.subtreeSize : 0;
+    }
+
     /**
      * getter for the left child  node pointer
      * @return pointer to the left child node
@@ -150,6 +200,14 @@ class TreeNode {
         }
     }
 
+    /**
+     * returns the subtree size of the left child node
+     * @return the size as an int, 0 if null
+     */
+    public int getLeftChildSize() {
+        return leftChild != null ? leftChild.subtreeSize : 0;
+    }
+
     /**
      * calculates if the node is a right or left child of it's parent
      * @return son type
@@ -0,0 +1,140 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests ArrayAvlTree with its nodes on the heap and off the heap, against a TreeSet.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class ArrayAvlTreeTest {
+
+    /*The number of random changes of the differential tests*/
+    private static final int OPERATIONS = 20000;
+
+    /*The random values are taken from [0, VALUE_RANGE), small enough to hit present values often*/
+    private static final int VALUE_RANGE = 2000;
+
+    @Test
+    void heapTreeMatchesTreeSet() {
+        checkAgainstTreeSet(new ArrayAvlTree(), 1);
+    }
+
+    @Test
+    void offHeapTreeMatchesTreeSet() {
+        checkAgainstTreeSet(ArrayAvlTree.offHeap(0), 2);
+    }
+
+    @Test
+    void heapBulkBuildIsBalanced() {
+        checkBulkBuild(ArrayAvlTree::new);
+    }
+
+    @Test
+    void offHeapBulkBuildIsBalanced() {
+        checkBulkBuild(ArrayAvlTree::offHeap);
+    }
+
+    @Test
+    void trimToSizeKeepsTheValues() {
+        ArrayAvlTree arrayTree = ArrayAvlTree.offHeap(1024);
+        for (int value = 0; value < 1000; value++) {
+            arrayTree.add(value);
+        }
+        for (int value = 0; value < 1000; value += 2) {
+            arrayTree.delete(value);
+        }
+        arrayTree.trimToSize();
+        assertEquals(500, arrayTree.size());
+        for (int value = 0; value < 1000; value++) {
+            assertEquals(value % 2 == 1, arrayTree.contains(value) >= 0, "value " + value);
+        }
+    }
+
+    /**
+     * Makes random adds and deletes on a tree and on a TreeSet, comparing their results, contents and the
+     * height of the tree as it goes.
+     * @param arrayTree an empty tree.
+     * @param seed the seed of the changes.
+     */
+    private static void checkAgainstTreeSet(ArrayAvlTree arrayTree, long seed) {
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(seed);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            int value = random.nextInt(VALUE_RANGE);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), arrayTree.delete(value), "delete " + value);
+            } else {
+                assertEquals(expected.add(value), arrayTree.add(value), "add " + value);
+            }
+            assertEquals(expected.size(), arrayTree.size());
+            if (operation % 1000 == 0) {
+                assertSameValues(expected, arrayTree);
+            }
+        }
+        assertSameValues(expected, arrayTree);
+        for (int value = -1; value <= VALUE_RANGE; value++) {
+            assertEquals(expected.contains(value), arrayTree.contains(value) >= 0, "contains " + value);
+        }
+        for (int value : new ArrayList<>(expected)) {
+            assertTrue(arrayTree.delete(value));
+        }
+        assertEquals(0, arrayTree.size());
+        assertFalse(arrayTree.iterator().hasNext());
+    }
+
+    /**
+     * Builds trees of many sizes from unsorted arrays with duplicates and checks their values and height.
+     * @param builder makes a tree from an array.
+     */
+    private static void checkBulkBuild(Function<int[], ArrayAvlTree> builder) {
+        Random random = new Random(3);
+        for (int size = 0; size < 300; size++) {
+            int[] data = new int[size];
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt(size + 1);
+                expected.add(data[i]);
+            }
+            ArrayAvlTree arrayTree = builder.apply(data);
+            assertSameValues(expected, arrayTree);
+            arrayTree.add(size + 1);
+            expected.add(size + 1);
+            assertSameValues(expected, arrayTree);
+        }
+    }
+
+    /**
+     * @param expected the values the tree should hold.
+     * @param arrayTree the tree.
+     */
+    private static void assertSameValues(TreeSet<Integer> expected, ArrayAvlTree arrayTree) {
+        List<Integer> actual = new ArrayList<>();
+        for (Iterator<Integer> values = arrayTree.iterator(); values.hasNext(); ) {
+            actual.add(values.next());
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+        assertEquals(expected.size(), arrayTree.size());
+        assertTrue(arrayTree.getHeight() <= maxAvlHeight(expected.size()),
+                "height " + arrayTree.getHeight() + " for " + expected.size() + " values");
+    }
+
+    /**
+     * @param size a number of values.
+     * @return the greatest height of an AVL tree with that many values.
+     */
+    static int maxAvlHeight(int size) {
+        return (int) (1.45 * Math.log(size + 2) / Math.log(2));
+    }
+}
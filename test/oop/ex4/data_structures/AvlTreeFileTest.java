@@ -0,0 +1,149 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests writing and opening AvlTreeFile, and that damaged files are found out.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class AvlTreeFileTest {
+
+    /*The size of the header of a tree file*/
+    private static final int HEADER_BYTES = 24;
+
+    /*The directory of the files of a test*/
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenTreeIsReadBack() throws IOException {
+        Random random = new Random(14);
+        for (int size : new int[]{0, 1, 2, 100, 70000}) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            AvlTree avlTree = new AvlTree();
+            while (expected.size() < size) {
+                int value = random.nextInt();
+                expected.add(value);
+                avlTree.add(value);
+            }
+            Path path = directory.resolve("tree-" + size + ".avlt");
+            AvlTreeFile.write(avlTree, path);
+            AvlTreeFile treeFile = AvlTreeFile.open(path);
+            assertTrue(treeFile.verifyChecksum());
+            assertEquals(size, treeFile.size());
+            assertEquals(new ArrayList<>(expected), toList(treeFile.intIterator()));
+            AvlTree balancedTree = treeFile.toAvlTree();
+            assertEquals(treeFile.getHeight(), balancedTree.getHeight());
+            for (int value : expected) {
+                assertEquals(balancedTree.contains(value), treeFile.contains(value), "contains " + value);
+            }
+            for (int i = 0; i < 100; i++) {
+                int value = random.nextInt();
+                assertEquals(expected.contains(value), treeFile.containsKey(value), "contains " + value);
+                int to = value + random.nextInt(Integer.MAX_VALUE / 1000);
+                if (to > value) {
+                    assertEquals(new ArrayList<>(expected.subSet(value, to)),
+                            toList(treeFile.intIterator(value, to)), "range from " + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void changedValueFailsTheChecksum() throws IOException {
+        Path path = writeTree(1000);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(HEADER_BYTES + 4 * 500);
+            int value = file.readInt();
+            file.seek(HEADER_BYTES + 4 * 500);
+            file.writeInt(value ^ 0x100);
+        }
+        assertFalse(AvlTreeFile.open(path).verifyChecksum());
+    }
+
+    @Test
+    void changedChecksumFailsTheChecksum() throws IOException {
+        Path path = writeTree(10);
+        flipByte(path, 16);
+        assertFalse(AvlTreeFile.open(path).verifyChecksum());
+    }
+
+    @Test
+    void damagedHeaderIsRefused() throws IOException {
+        // magic, version, then the number of values, which no longer matches the length of the file
+        for (int offset : new int[]{0, 4, 8}) {
+            Path path = writeTree(10);
+            flipByte(path, offset);
+            assertThrows(IOException.class, () -> AvlTreeFile.open(path), "header byte " + offset);
+        }
+    }
+
+    @Test
+    void cutFileIsRefused() throws IOException {
+        Path path = writeTree(10);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        assertThrows(IOException.class, () -> AvlTreeFile.open(path));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(HEADER_BYTES - 1);
+        }
+        assertThrows(IOException.class, () -> AvlTreeFile.open(path));
+    }
+
+    /**
+     * @param size the number of values.
+     * @return a new tree file with the values 0 .. size - 1.
+     * @throws IOException if the file cannot be written.
+     */
+    private Path writeTree(int size) throws IOException {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        Path path = Files.createTempFile(directory, "tree-", ".avlt");
+        AvlTreeFile.write(new AvlTree(values), path);
+        return path;
+    }
+
+    /**
+     * @param path a file.
+     * @param offset the position of the byte to change.
+     * @throws IOException if the file cannot be changed.
+     */
+    private static void flipByte(Path path, int offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(offset);
+            int original = file.read();
+            file.seek(offset);
+            file.write(original ^ 0x01);
+        }
+    }
+
+    /**
+     * @param iterator an iterator.
+     * @return the values left in the iterator.
+     */
+    private static List<Integer> toList(PrimitiveIterator.OfInt iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+}
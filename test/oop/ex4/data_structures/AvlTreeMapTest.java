@@ -0,0 +1,139 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests AvlTreeMap against a TreeMap, with the natural order and with a comparator.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class AvlTreeMapTest {
+
+    /*The number of random changes of the differential tests*/
+    private static final int OPERATIONS = 20000;
+
+    /*The random keys are taken from this many distinct strings*/
+    private static final int DISTINCT_KEYS = 2000;
+
+    @Test
+    void naturalOrderMatchesTreeMap() {
+        checkAgainstTreeMap(null, 15);
+    }
+
+    @Test
+    void comparatorOrderMatchesTreeMap() {
+        checkAgainstTreeMap(Comparator.reverseOrder(), 16);
+    }
+
+    @Test
+    void mapConstructorKeepsTheLastOfEqualKeys() {
+        Map<String, Integer> source = new LinkedHashMap<>();
+        source.put("b", 1);
+        source.put("A", 2);
+        source.put("B", 3);
+        source.put("a", 4);
+        source.put("c", 5);
+        AvlTreeMap<String, Integer> avlTreeMap = new AvlTreeMap<>(source, String.CASE_INSENSITIVE_ORDER);
+        assertEquals(3, avlTreeMap.size());
+        assertEquals(List.of("a", "B", "c"), keysOf(avlTreeMap));
+        assertEquals(4, avlTreeMap.get("A"));
+        assertEquals(3, avlTreeMap.get("b"));
+    }
+
+    @Test
+    void copyIsIndependentOfTheSource() {
+        AvlTreeMap<Integer, String> source = new AvlTreeMap<>();
+        for (int key = 0; key < 100; key++) {
+            source.put(key, "value " + key);
+        }
+        AvlTreeMap<Integer, String> copy = new AvlTreeMap<>(source);
+        assertEquals(source.getHeight(), copy.getHeight());
+        copy.delete(5);
+        copy.put(6, "changed");
+        copy.add(100);
+        assertEquals("value 5", source.get(5));
+        assertEquals("value 6", source.get(6));
+        assertEquals(100, source.size());
+        assertNull(copy.get(5));
+        assertEquals("changed", copy.get(6));
+        assertTrue(copy.containsKey(100));
+        assertNull(copy.get(100));
+    }
+
+    /**
+     * Makes random puts, adds and deletes on a tree and on a TreeMap with the same order, comparing their
+     * results and contents as it goes.
+     * @param comparator the order of the keys, null for the natural order.
+     * @param seed the seed of the changes.
+     */
+    private static void checkAgainstTreeMap(Comparator<String> comparator, long seed) {
+        AvlTreeMap<String, Integer> avlTreeMap = new AvlTreeMap<>(comparator);
+        TreeMap<String, Integer> expected = new TreeMap<>(comparator);
+        Random random = new Random(seed);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            String key = "key " + random.nextInt(DISTINCT_KEYS);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.containsKey(key), avlTreeMap.delete(key), "delete " + key);
+                    expected.remove(key);
+                    break;
+                case 1:
+                    boolean missing = !expected.containsKey(key);
+                    if (missing) {
+                        expected.put(key, null);
+                    }
+                    assertEquals(missing, avlTreeMap.add(key), "add " + key);
+                    break;
+                default:
+                    assertEquals(expected.put(key, operation), avlTreeMap.put(key, operation), "put " + key);
+            }
+            assertEquals(expected.size(), avlTreeMap.size());
+            if (operation % 1000 == 0) {
+                assertSameEntries(expected, avlTreeMap);
+            }
+        }
+        assertSameEntries(expected, avlTreeMap);
+        for (int index = 0; index < DISTINCT_KEYS; index++) {
+            String key = "key " + index;
+            assertEquals(expected.containsKey(key), avlTreeMap.containsKey(key), "contains " + key);
+            assertEquals(expected.get(key), avlTreeMap.get(key), "get " + key);
+        }
+    }
+
+    /**
+     * @param expected the entries the tree should hold.
+     * @param avlTreeMap the tree.
+     */
+    private static <K, V> void assertSameEntries(TreeMap<K, V> expected, AvlTreeMap<K, V> avlTreeMap) {
+        List<V> values = new ArrayList<>();
+        avlTreeMap.entryIterator().forEachRemaining(entry -> values.add(entry.getValue()));
+        assertEquals(new ArrayList<>(expected.keySet()), keysOf(avlTreeMap));
+        assertEquals(new ArrayList<>(expected.values()), values);
+        assertEquals(expected.size(), avlTreeMap.size());
+        // heights count the nodes on the longest path, one more than an AVL bound on the edges
+        assertTrue(avlTreeMap.getHeight() <= ArrayAvlTreeTest.maxAvlHeight(expected.size()) + 1,
+                "height " + avlTreeMap.getHeight() + " for " + expected.size() + " values");
+    }
+
+    /**
+     * @param avlTreeMap a tree.
+     * @return the keys of the tree in the order of its iterator.
+     */
+    private static <K> List<K> keysOf(AvlTreeMap<K, ?> avlTreeMap) {
+        List<K> keys = new ArrayList<>();
+        avlTreeMap.iterator().forEachRemaining(keys::add);
+        return keys;
+    }
+}
@@ -0,0 +1,153 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests BTree against a TreeSet, filled by adds and by the bulk constructor.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class BTreeTest {
+
+    /*The minimum degree of BTree*/
+    private static final int T = 32;
+
+    /*The number of random changes of the differential test*/
+    private static final int OPERATIONS = 50000;
+
+    /*The random values are taken from [0, VALUE_RANGE), enough for a tree of a few levels*/
+    private static final int VALUE_RANGE = 20000;
+
+    @Test
+    void matchesTreeSet() {
+        BTree bTree = new BTree();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(12);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            int value = random.nextInt(VALUE_RANGE);
+            // more deletes in the second half, so nodes are merged and borrowed from as the tree shrinks
+            if (random.nextInt(operation < OPERATIONS / 2 ? 4 : 2) == 0) {
+                assertEquals(expected.remove(value), bTree.delete(value), "delete " + value);
+            } else {
+                assertEquals(expected.add(value), bTree.add(value), "add " + value);
+            }
+            assertEquals(expected.size(), bTree.size());
+            if (operation % 5000 == 0) {
+                assertSameValues(expected, bTree);
+            }
+        }
+        assertSameValues(expected, bTree);
+        for (int value = -1; value <= VALUE_RANGE; value++) {
+            assertEquals(expected.contains(value), bTree.containsKey(value), "contains " + value);
+        }
+        for (int value : new ArrayList<>(expected)) {
+            assertTrue(bTree.delete(value));
+        }
+        assertSameValues(new TreeSet<>(), bTree);
+    }
+
+    @Test
+    void bulkLoadedTreesAreFullAndStayValid() {
+        Random random = new Random(13);
+        int[] sizes = {0, 1, 2 * T - 2, 2 * T - 1, 2 * T, 2 * T + 1, 4 * T, (2 * T) * (2 * T) - 1,
+                (2 * T) * (2 * T), (2 * T) * (2 * T) + 1, 5000, 100000};
+        for (int size : sizes) {
+            int[] data = new int[size];
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                data[i] = 2 * i;
+                expected.add(2 * i);
+            }
+            shuffle(data, random);
+            BTree bTree = new BTree(data);
+            assertSameValues(expected, bTree);
+            assertEquals(minHeight(size), bTree.getHeight(), "height for " + size + " values");
+            // changes after a bulk load must find every node within the bounds of a B-tree
+            for (int i = 0; i < 2 * size + 10; i++) {
+                int value = random.nextInt(2 * size + 10);
+                if (random.nextBoolean()) {
+                    assertEquals(expected.remove(value), bTree.delete(value), "delete " + value);
+                } else {
+                    assertEquals(expected.add(value), bTree.add(value), "add " + value);
+                }
+            }
+            assertSameValues(expected, bTree);
+        }
+    }
+
+    @Test
+    void bulkLoadDropsDuplicates() {
+        BTree bTree = new BTree(new int[]{5, 3, 5, 1, 3, 3});
+        assertEquals(List.of(1, 3, 5), toList(bTree.intIterator()));
+        assertEquals(3, bTree.size());
+    }
+
+    /**
+     * @param expected the values the tree should hold.
+     * @param bTree the tree.
+     */
+    private static void assertSameValues(TreeSet<Integer> expected, BTree bTree) {
+        assertEquals(new ArrayList<>(expected), toList(bTree.intIterator()));
+        assertEquals(expected.size(), bTree.size());
+        assertTrue(bTree.getHeight() <= maxHeight(expected.size()),
+                "height " + bTree.getHeight() + " for " + expected.size() + " values");
+    }
+
+    /**
+     * @param size a number of values.
+     * @return the height of a B-tree whose nodes are all full.
+     */
+    private static int minHeight(int size) {
+        int height = 0;
+        for (long capacity = 2 * T - 1; capacity < size; capacity = capacity * (2 * T) + 2 * T - 1) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * @param size a number of values.
+     * @return the greatest height of a B-tree with that many values, when every node but the root holds
+     * at least T-1 values.
+     */
+    private static int maxHeight(int size) {
+        int height = 0;
+        // a tree of height h + 1 has at least 2 * T^(h + 1) - 1 values
+        for (long leastValues = 2L * T - 1; leastValues <= size; leastValues = (leastValues + 1) * T - 1) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * @param data an array to shuffle in place.
+     * @param random the source of the order.
+     */
+    private static void shuffle(int[] data, Random random) {
+        for (int i = data.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swapped = data[i];
+            data[i] = data[j];
+            data[j] = swapped;
+        }
+    }
+
+    /**
+     * @param iterator an iterator.
+     * @return the values left in the iterator.
+     */
+    private static List<Integer> toList(PrimitiveIterator.OfInt iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+}
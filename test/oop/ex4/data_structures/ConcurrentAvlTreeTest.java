@@ -0,0 +1,161 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests ConcurrentAvlTree against a TreeSet, and its readers while other threads change the tree.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class ConcurrentAvlTreeTest {
+
+    /*The number of random changes of the differential test*/
+    private static final int OPERATIONS = 20000;
+
+    /*The random values are taken from [0, VALUE_RANGE)*/
+    private static final int VALUE_RANGE = 2000;
+
+    @Test
+    void matchesTreeSet() {
+        ConcurrentAvlTree concurrentTree = new ConcurrentAvlTree();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(10);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            int value = random.nextInt(VALUE_RANGE);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.remove(value), concurrentTree.delete(value), "delete " + value);
+                    break;
+                case 1:
+                    int[] batch = random.ints(8, 0, VALUE_RANGE).toArray();
+                    int changed = 0;
+                    for (int batchValue : batch) {
+                        changed += (operation % 2 == 0 ? expected.add(batchValue) :
+                                expected.remove(batchValue)) ? 1 : 0;
+                    }
+                    assertEquals(changed, operation % 2 == 0 ? concurrentTree.addAll(batch) :
+                            concurrentTree.deleteAll(batch));
+                    break;
+                default:
+                    assertEquals(expected.add(value), concurrentTree.add(value), "add " + value);
+            }
+            assertEquals(expected.size(), concurrentTree.size());
+        }
+        assertEquals(new ArrayList<>(expected), toList(concurrentTree.intIterator()));
+        for (int value = -1; value <= VALUE_RANGE; value++) {
+            assertEquals(expected.contains(value), concurrentTree.containsKey(value), "contains " + value);
+        }
+        for (int from = -5; from < VALUE_RANGE; from += 97) {
+            int to = from + random.nextInt(300);
+            assertEquals(new ArrayList<>(expected.subSet(from, to)),
+                    toList(concurrentTree.intIterator(from, to)), "range " + from + " " + to);
+        }
+        assertEquals(new ArrayList<>(expected),
+                concurrentTree.intStream().parallel().boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    void snapshotIsNotChangedByLaterWrites() {
+        ConcurrentAvlTree concurrentTree = new ConcurrentAvlTree(new int[]{5, 1, 3});
+        AvlTree snapshot = concurrentTree.snapshot();
+        PrimitiveIterator.OfInt iterator = concurrentTree.intIterator();
+        concurrentTree.delete(1);
+        concurrentTree.add(4);
+        assertEquals(List.of(1, 3, 5), toList(snapshot.intIterator()));
+        assertEquals(List.of(1, 3, 5), toList(iterator));
+        assertEquals(List.of(3, 4, 5), toList(concurrentTree.intIterator()));
+    }
+
+    @Test
+    void readersSeeWholeVersionsWhileAWriterAdds() throws Exception {
+        int values = 20000;
+        ConcurrentAvlTree concurrentTree = new ConcurrentAvlTree();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> scans = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                scans.add(readers.submit(() -> {
+                    int scanned = 0;
+                    while (writing.get()) {
+                        // the values are added in ascending order, so every version holds 0 .. size - 1
+                        int expectedNext = 0;
+                        for (PrimitiveIterator.OfInt iterator = concurrentTree.intIterator();
+                             iterator.hasNext(); expectedNext++) {
+                            assertEquals(expectedNext, iterator.nextInt());
+                        }
+                        int size = concurrentTree.size();
+                        assertTrue(size >= expectedNext);
+                        assertTrue(size == 0 || concurrentTree.containsKey(size - 1));
+                        scanned++;
+                    }
+                    return scanned;
+                }));
+            }
+            for (int value = 0; value < values; value++) {
+                assertTrue(concurrentTree.add(value));
+            }
+            writing.set(false);
+            for (Future<Integer> scan : scans) {
+                assertTrue(scan.get() > 0);
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+        assertEquals(values, concurrentTree.size());
+    }
+
+    @Test
+    void concurrentWritersLoseNoChange() throws Exception {
+        int writers = 4, valuesPerWriter = 5000;
+        ConcurrentAvlTree concurrentTree = new ConcurrentAvlTree();
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int first = writer;
+                done.add(pool.submit(() -> {
+                    for (int value = first; value < writers * valuesPerWriter; value += writers) {
+                        assertTrue(concurrentTree.add(value));
+                    }
+                    for (int value = first; value < writers * valuesPerWriter; value += 2 * writers) {
+                        assertTrue(concurrentTree.delete(value));
+                    }
+                }));
+            }
+            for (Future<?> writer : done) {
+                writer.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(writers * valuesPerWriter / 2, concurrentTree.size());
+        for (int value = 0; value < writers * valuesPerWriter; value++) {
+            assertEquals((value / writers) % 2 == 1, concurrentTree.containsKey(value), "value " + value);
+        }
+    }
+
+    /**
+     * @param iterator an iterator.
+     * @return the values left in the iterator.
+     */
+    private static List<Integer> toList(PrimitiveIterator.OfInt iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+}
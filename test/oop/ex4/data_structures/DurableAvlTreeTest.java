@@ -0,0 +1,234 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that DurableAvlTree recovers its changes after a crash under every sync policy. A crash is taken
+ * as a copy of the directory while the tree is still open, which holds what the tree had written so far;
+ * the copy is then opened as a restarted process would.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class DurableAvlTreeTest {
+
+    /*The number of random changes before a crash*/
+    private static final int OPERATIONS = 3000;
+
+    /*The random values are taken from [0, VALUE_RANGE)*/
+    private static final int VALUE_RANGE = 500;
+
+    /*The time between group commits of the tested trees, in milliseconds*/
+    private static final long GROUP_COMMIT_MILLIS = 1;
+
+    /*The directory of the files of a test*/
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(DurableAvlTree.SyncPolicy.class)
+    void syncedChangesSurviveACrash(DurableAvlTree.SyncPolicy syncPolicy) throws Exception {
+        Path treeDirectory = directory.resolve("tree");
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(15);
+        try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory, syncPolicy, GROUP_COMMIT_MILLIS,
+                0)) {
+            for (int operation = 0; operation < OPERATIONS; operation++) {
+                int value = random.nextInt(VALUE_RANGE);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), durableTree.delete(value), "delete " + value);
+                } else {
+                    assertEquals(expected.add(value), durableTree.add(value), "add " + value);
+                }
+                // checkpoints in the middle, so the recovery loads one and replays the logs after it
+                if (operation == OPERATIONS / 3 || operation == 2 * OPERATIONS / 3) {
+                    durableTree.checkpoint().get();
+                }
+            }
+            if (syncPolicy == DurableAvlTree.SyncPolicy.ASYNC) {
+                durableTree.sync();
+            }
+            assertEquals(new ArrayList<>(expected), recoverAfterCrash(treeDirectory, "crash"));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DurableAvlTree.SyncPolicy.class)
+    void recoveryIgnoresACutRecordAndAnUnfinishedCheckpoint(DurableAvlTree.SyncPolicy syncPolicy)
+            throws Exception {
+        Path treeDirectory = directory.resolve("tree");
+        TreeSet<Integer> expected = new TreeSet<>();
+        try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory, syncPolicy, GROUP_COMMIT_MILLIS,
+                0)) {
+            for (int value = 0; value < 100; value++) {
+                durableTree.add(value);
+                expected.add(value);
+            }
+            durableTree.checkpoint().get();
+            for (int value = 0; value < 100; value += 3) {
+                durableTree.delete(value);
+                expected.remove(value);
+            }
+            durableTree.sync();
+            Path crashDirectory = copyDirectory(treeDirectory, "crash");
+            // the first bytes of a record whose write was cut off, and a checkpoint that was being written
+            Files.write(newestLog(crashDirectory), new byte[]{1, 42, 0, 0}, StandardOpenOption.APPEND);
+            Files.write(crashDirectory.resolve("checkpoint-9.avlt.tmp"), new byte[]{1, 2, 3});
+            try (DurableAvlTree recoveredTree = new DurableAvlTree(crashDirectory, syncPolicy,
+                    GROUP_COMMIT_MILLIS, 0)) {
+                assertEquals(new ArrayList<>(expected), toList(recoveredTree));
+                assertTrue(recoveredTree.add(1000));
+                expected.add(1000);
+            }
+            try (DurableAvlTree reopenedTree = new DurableAvlTree(crashDirectory, syncPolicy,
+                    GROUP_COMMIT_MILLIS, 0)) {
+                assertEquals(new ArrayList<>(expected), toList(reopenedTree));
+            }
+            try (Stream<Path> files = Files.list(crashDirectory)) {
+                assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+            }
+        }
+    }
+
+    @Test
+    void asyncCrashKeepsAPrefixOfTheChanges() throws Exception {
+        Path treeDirectory = directory.resolve("tree");
+        try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory, DurableAvlTree.SyncPolicy.ASYNC,
+                GROUP_COMMIT_MILLIS, 0)) {
+            for (int value = 0; value < 1000; value++) {
+                durableTree.add(value);
+            }
+            durableTree.sync();
+            for (int value = 1000; value < 5000; value++) {
+                durableTree.add(value);
+            }
+            // changes after the sync may be lost, but only from the end, so the tree holds 0 .. n - 1
+            List<Integer> recovered = recoverAfterCrash(treeDirectory, "crash");
+            assertTrue(recovered.size() >= 1000);
+            for (int i = 0; i < recovered.size(); i++) {
+                assertEquals(i, recovered.get(i));
+            }
+        }
+    }
+
+    @Test
+    void closedTreeIsReopenedWithAutomaticCheckpoints() throws Exception {
+        Path treeDirectory = directory.resolve("tree");
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(16);
+        for (int run = 0; run < 3; run++) {
+            try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory,
+                    DurableAvlTree.SyncPolicy.GROUP_COMMIT, GROUP_COMMIT_MILLIS, 200)) {
+                assertEquals(new ArrayList<>(expected), toList(durableTree));
+                for (int operation = 0; operation < 1000; operation++) {
+                    int value = random.nextInt(VALUE_RANGE);
+                    if (random.nextBoolean()) {
+                        assertEquals(expected.remove(value), durableTree.delete(value));
+                    } else {
+                        assertEquals(expected.add(value), durableTree.add(value));
+                    }
+                }
+            }
+        }
+        try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory)) {
+            assertEquals(new ArrayList<>(expected), toList(durableTree));
+        }
+    }
+
+    @Test
+    void damagedCheckpointIsRefused() throws Exception {
+        Path treeDirectory = directory.resolve("tree");
+        try (DurableAvlTree durableTree = new DurableAvlTree(treeDirectory)) {
+            for (int value = 0; value < 100; value++) {
+                durableTree.add(value);
+            }
+            durableTree.checkpoint().get();
+        }
+        Path checkpoint;
+        try (Stream<Path> files = Files.list(treeDirectory)) {
+            checkpoint = files.filter(file -> file.getFileName().toString().endsWith(".avlt")).findFirst()
+                    .orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(checkpoint.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0x01);
+        }
+        assertThrows(IOException.class, () -> new DurableAvlTree(treeDirectory));
+    }
+
+    /**
+     * Opens a copy of a directory whose tree is still open, as a process restarted after a crash would.
+     * @param treeDirectory the directory of an open tree.
+     * @param name the name of the copy.
+     * @return the values of the recovered tree in ascending order.
+     * @throws IOException if the directory cannot be copied or recovered.
+     */
+    private List<Integer> recoverAfterCrash(Path treeDirectory, String name) throws IOException {
+        try (DurableAvlTree recoveredTree = new DurableAvlTree(copyDirectory(treeDirectory, name))) {
+            List<Integer> values = toList(recoveredTree);
+            assertEquals(values.size(), recoveredTree.size());
+            return values;
+        }
+    }
+
+    /**
+     * @param source a directory of regular files.
+     * @param name the name of the copy.
+     * @return a copy of the directory next to the others of the test.
+     * @throws IOException if the directory cannot be copied.
+     */
+    private Path copyDirectory(Path source, String name) throws IOException {
+        Path copy = Files.createDirectory(directory.resolve(name));
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @param treeDirectory the directory of a tree.
+     * @return the log of the highest generation.
+     * @throws IOException if the directory cannot be read.
+     */
+    private static Path newestLog(Path treeDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(treeDirectory)) {
+            return files.filter(file -> file.getFileName().toString().matches("wal-\\d+\\.log"))
+                    .max(Comparator.comparingLong(file -> Long.parseLong(
+                            file.getFileName().toString().replaceAll("\\D", ""))))
+                    .orElseThrow();
+        }
+    }
+
+    /**
+     * @param values the values of a tree.
+     * @return the values in the order of the iterator.
+     */
+    private static List<Integer> toList(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        return list;
+    }
+}
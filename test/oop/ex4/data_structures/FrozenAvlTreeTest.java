@@ -0,0 +1,99 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the snapshots of AvlTree.freeze() against a TreeSet.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class FrozenAvlTreeTest {
+
+    @Test
+    void snapshotsOfEverySizeMatchTreeSet() {
+        Random random = new Random(23);
+        for (int size = 0; size < 300; size++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            AvlTree avlTree = new AvlTree();
+            while (expected.size() < size) {
+                int value = random.nextInt(4 * size) - 2 * size;
+                expected.add(value);
+                avlTree.add(value);
+            }
+            FrozenAvlTree frozenTree = avlTree.freeze();
+            assertEquals(size, frozenTree.size());
+            assertEquals(new ArrayList<>(expected),
+                    frozenTree.intStream().boxed().collect(Collectors.toList()));
+            List<Integer> iterated = new ArrayList<>();
+            frozenTree.iterator().forEachRemaining(iterated::add);
+            assertEquals(new ArrayList<>(expected), iterated);
+            for (int value = -2 * size - 1; value <= 2 * size + 1; value++) {
+                assertEquals(expected.contains(value), frozenTree.containsKey(value), "contains " + value);
+                assertEquals(expected.contains(value), frozenTree.contains(value) >= 0, "depth of " + value);
+            }
+            for (int from = -2 * size - 1; from <= 2 * size + 1; from += 7) {
+                int to = from + random.nextInt(size + 2);
+                assertEquals(new ArrayList<>(expected.subSet(from, to)),
+                        frozenTree.intStream(from, to).boxed().collect(Collectors.toList()),
+                        "range " + from + " " + to);
+            }
+            assertEquals(new ArrayList<>(expected), toList(frozenTree.toAvlTree()));
+        }
+    }
+
+    @Test
+    void depthsAreThoseOfACompleteTree() {
+        int size = 1000;
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 3 * i;
+        }
+        FrozenAvlTree frozenTree = new AvlTree(values).freeze();
+        int[] valuesAtDepth = new int[frozenTree.getHeight() + 1];
+        for (int value : values) {
+            valuesAtDepth[frozenTree.contains(value)]++;
+        }
+        // every level is full but the last
+        for (int depth = 0; depth < valuesAtDepth.length - 1; depth++) {
+            assertEquals(1 << depth, valuesAtDepth[depth], "depth " + depth);
+        }
+        assertEquals(size - (1 << frozenTree.getHeight()) + 1, valuesAtDepth[frozenTree.getHeight()]);
+    }
+
+    @Test
+    void snapshotIgnoresLaterChangesAndExtremeValues() {
+        AvlTree avlTree = new AvlTree(new int[]{Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE});
+        FrozenAvlTree frozenTree = avlTree.freeze();
+        avlTree.delete(0);
+        avlTree.add(5);
+        assertTrue(frozenTree.containsKey(0));
+        assertFalse(frozenTree.containsKey(5));
+        assertTrue(frozenTree.containsKey(Integer.MIN_VALUE));
+        assertTrue(frozenTree.containsKey(Integer.MAX_VALUE));
+        assertEquals(List.of(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE),
+                frozenTree.intStream().boxed().collect(Collectors.toList()));
+        assertEquals(List.of(-1, 0, 1), frozenTree.intStream(-1, Integer.MAX_VALUE).limit(3).boxed()
+                .collect(Collectors.toList()));
+        assertEquals(List.of(Integer.MIN_VALUE, -1, 1, 5, Integer.MAX_VALUE), toList(avlTree));
+    }
+
+    /**
+     * @param avlTree a tree.
+     * @return the values of the tree in ascending order.
+     */
+    private static List<Integer> toList(AvlTree avlTree) {
+        List<Integer> values = new ArrayList<>();
+        avlTree.intIterator().forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+}
@@ -0,0 +1,104 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests LongAvlTree against a TreeSet.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class LongAvlTreeTest {
+
+    /*The number of random changes of the differential test*/
+    private static final int OPERATIONS = 20000;
+
+    /*The random values are spread over the whole long range, in this many distinct values*/
+    private static final int DISTINCT_VALUES = 2000;
+
+    @Test
+    void matchesTreeSet() {
+        LongAvlTree longTree = new LongAvlTree();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(13);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            long value = valueOf(random.nextInt(DISTINCT_VALUES));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), longTree.delete(value), "delete " + value);
+            } else {
+                assertEquals(expected.add(value), longTree.add(value), "add " + value);
+            }
+            assertEquals(expected.size(), longTree.size());
+            if (operation % 1000 == 0) {
+                assertSameValues(expected, longTree);
+            }
+        }
+        assertSameValues(expected, longTree);
+        for (int index = 0; index < DISTINCT_VALUES; index++) {
+            long value = valueOf(index);
+            assertEquals(expected.contains(value), longTree.containsKey(value), "contains " + value);
+        }
+        for (long value : new ArrayList<>(expected)) {
+            assertTrue(longTree.delete(value));
+        }
+        assertSameValues(new TreeSet<>(), longTree);
+    }
+
+    @Test
+    void bulkBuiltAndCopiedTreesMatchTreeSet() {
+        Random random = new Random(14);
+        for (int size = 0; size < 200; size++) {
+            long[] data = new long[size];
+            TreeSet<Long> expected = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                data[i] = valueOf(random.nextInt(size + 1));
+                expected.add(data[i]);
+            }
+            LongAvlTree longTree = new LongAvlTree(data);
+            assertSameValues(expected, longTree);
+            LongAvlTree copy = new LongAvlTree(longTree);
+            assertEquals(longTree.getHeight(), copy.getHeight());
+            copy.add(Long.MIN_VALUE + 1);
+            copy.delete(expected.isEmpty() ? 0 : expected.last());
+            assertSameValues(expected, longTree);
+            TreeSet<Long> expectedCopy = new TreeSet<>(expected);
+            expectedCopy.add(Long.MIN_VALUE + 1);
+            if (!expected.isEmpty()) {
+                expectedCopy.remove(expected.last());
+            }
+            assertSameValues(expectedCopy, copy);
+        }
+    }
+
+    /**
+     * @param index the index of a value, in [0, DISTINCT_VALUES].
+     * @return the value, the extremes of the long range included.
+     */
+    private static long valueOf(int index) {
+        return index == 0 ? Long.MIN_VALUE : index == 1 ? Long.MAX_VALUE :
+                (long) index * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * @param expected the values the tree should hold.
+     * @param longTree the tree.
+     */
+    private static void assertSameValues(TreeSet<Long> expected, LongAvlTree longTree) {
+        assertEquals(new ArrayList<>(expected), longTree.longStream().boxed().collect(Collectors.toList()));
+        List<Long> iterated = new ArrayList<>();
+        longTree.iterator().forEachRemaining(iterated::add);
+        assertEquals(new ArrayList<>(expected), iterated);
+        assertEquals(expected.size(), longTree.size());
+        // heights count the nodes on the longest path, one more than an AVL bound on the edges
+        assertTrue(longTree.getHeight() <= ArrayAvlTreeTest.maxAvlHeight(expected.size()) + 1,
+                "height " + longTree.getHeight() + " for " + expected.size() + " values");
+    }
+}
@@ -0,0 +1,116 @@
+package oop.ex4.data_structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests PersistentAvlTree against a TreeSet, and that every version keeps its values.
+ * @author Elkana Tovey
+ * @author Aviad Dudkevitch
+ */
+class PersistentAvlTreeTest {
+
+    /*The number of random changes of the differential test*/
+    private static final int OPERATIONS = 5000;
+
+    /*The random values are taken from [0, VALUE_RANGE)*/
+    private static final int VALUE_RANGE = 1000;
+
+    @Test
+    void everyVersionMatchesItsTreeSet() {
+        List<PersistentAvlTree> versions = new ArrayList<>();
+        List<TreeSet<Integer>> expectedVersions = new ArrayList<>();
+        PersistentAvlTree version = PersistentAvlTree.empty();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(11);
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            int value = random.nextInt(VALUE_RANGE);
+            PersistentAvlTree previous = version;
+            boolean changed;
+            if (random.nextInt(3) == 0) {
+                changed = expected.remove(value);
+                version = version.delete(value);
+            } else {
+                changed = expected.add(value);
+                version = version.add(value);
+            }
+            if (changed) {
+                assertTrue(version.copiedNodes() <= 2 * previous.getHeight() + 2,
+                        version.copiedNodes() + " nodes copied for height " + previous.getHeight());
+            } else {
+                assertSame(previous, version);
+            }
+            assertEquals(expected.size(), version.size());
+            // heights count the nodes on the longest path, one more than an AVL bound on the edges
+            assertTrue(version.getHeight() <= ArrayAvlTreeTest.maxAvlHeight(expected.size()) + 1);
+            if (operation % 50 == 0) {
+                versions.add(version);
+                expectedVersions.add(new TreeSet<>(expected));
+            }
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(new ArrayList<>(expectedVersions.get(i)), toList(versions.get(i).intIterator()),
+                    "version " + i);
+        }
+        for (int value = -1; value <= VALUE_RANGE; value++) {
+            assertEquals(expected.contains(value), version.containsKey(value), "contains " + value);
+        }
+        for (int from = -5; from < VALUE_RANGE; from += 37) {
+            int to = from + random.nextInt(200);
+            assertEquals(new ArrayList<>(expected.subSet(from, to)), toList(version.intIterator(from, to)),
+                    "range " + from + " " + to);
+        }
+    }
+
+    @Test
+    void bulkBuiltVersionsMatchTheirValues() {
+        Random random = new Random(12);
+        for (int size = 0; size < 200; size++) {
+            int[] data = random.ints(size, -size, size + 1).toArray();
+            TreeSet<Integer> expected = new TreeSet<>();
+            AvlTree avlTree = new AvlTree();
+            for (int value : data) {
+                expected.add(value);
+                avlTree.add(value);
+            }
+            PersistentAvlTree fromArray = PersistentAvlTree.of(data);
+            PersistentAvlTree fromTree = PersistentAvlTree.of(avlTree);
+            assertEquals(new ArrayList<>(expected), toList(fromArray.intIterator()));
+            assertEquals(new ArrayList<>(expected), toList(fromTree.intIterator()));
+            assertEquals(expected.size(), fromArray.copiedNodes());
+            PersistentAvlTree changed = fromArray.add(size + 1)
+                    .delete(expected.isEmpty() ? 0 : expected.first());
+            assertEquals(new ArrayList<>(expected), toList(fromArray.intIterator()));
+            assertEquals(fromArray.size() + (expected.isEmpty() ? 1 : 0), changed.size());
+        }
+    }
+
+    @Test
+    void iteratorOfAVersionIgnoresLaterVersions() {
+        PersistentAvlTree version = PersistentAvlTree.of(new int[]{1, 2, 3, 4});
+        PrimitiveIterator.OfInt iterator = version.intIterator();
+        assertEquals(1, iterator.nextInt());
+        PersistentAvlTree later = version.delete(2).delete(3).add(5);
+        assertEquals(List.of(2, 3, 4), toList(iterator));
+        assertEquals(List.of(1, 4, 5), toList(later.intIterator()));
+    }
+
+    /**
+     * @param iterator an iterator.
+     * @return the values left in the iterator.
+     */
+    private static List<Integer> toList(PrimitiveIterator.OfInt iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+}